@@ -0,0 +1,117 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bean shapes shared by the benchmarks, modelled on the cards and links of a product listing page.
+ * 
+ * @author adam
+ *
+ */
+public final class BenchmarkBeans {
+	
+	private BenchmarkBeans() {
+	}
+	
+	public enum Shape {
+		POJO, MAP, DATA_MAP, DATA_PROPERTIES, COLLECTIONS, PRIMITIVE_ARRAYS;
+		
+		public Object create() {
+			switch(this) {
+			case POJO: return new LinkBean();
+			case MAP: return linkMap();
+			case DATA_MAP: return new DataMapBean();
+			case DATA_PROPERTIES: return new DataPropertiesBean();
+			case COLLECTIONS: return new CollectionsBean();
+			default: return new PrimitiveArraysBean();
+			}
+		}
+	}
+	
+	public static class LinkBean {
+		public String getHref() { return "http://www.example.com/products/1234"; }
+		public String getTitle() { return "Product 1234"; }
+		public String getTarget() { return "_blank"; }
+		public String getRel() { return "noopener"; }
+		public boolean isDisabled() { return false; }
+		public boolean getDraggable() { return true; }
+		public String getText() { return "Product 1234"; }
+	}
+	
+	public static class DataMapBean extends LinkBean {
+		private final Map<String,Object> data = new HashMap<String,Object>();
+		
+		public DataMapBean() {
+			data.put("product-id", Integer.valueOf(1234));
+			data.put("category", "shoes");
+			data.put("price", "49.99");
+			data.put("in-stock", Boolean.TRUE);
+			data.put("tracking", "listing-card");
+		}
+		
+		public Map<String,Object> getData() { return data; }
+	}
+	
+	public static class DataPropertiesBean extends LinkBean {
+		public String getDataProductId() { return "1234"; }
+		public String getDataCategory() { return "shoes"; }
+		public String getDataPrice() { return "49.99"; }
+		public String getDataInStock() { return "true"; }
+		public String getDataTracking() { return "listing-card"; }
+	}
+	
+	public static class CollectionsBean extends LinkBean {
+		private final List<String> cssClass = Arrays.asList("card", "card--product", "card--featured", "js-track");
+		private final List<String> single = Arrays.asList("only");
+		
+		public List<String> getCssClass() { return cssClass; }
+		public List<String> getRole() { return single; }
+	}
+	
+	public static class PrimitiveArraysBean extends LinkBean {
+		private final int[] ids = new int[] {1234, 5678, 9012, 3456};
+		private final double[] prices = new double[] {49.99D, 39.99D};
+		private final char[] sizes = new char[] {'S', 'M', 'L'};
+		
+		public int[] getDataIds() { return ids; }
+		public double[] getDataPrices() { return prices; }
+		public char[] getDataSizes() { return sizes; }
+	}
+	
+	public static Map<String,Object> linkMap() {
+		Map<String,Object> map = new LinkedHashMap<String,Object>();
+		map.put("href", "http://www.example.com/products/1234");
+		map.put("title", "Product 1234");
+		map.put("target", "_blank");
+		map.put("rel", "noopener");
+		map.put("draggable", Boolean.TRUE);
+		for(int i=0; i<15; i++) {
+			map.put("data-field-" + i, "value " + i);
+		}
+		map.put("text", "Product 1234");
+		return map;
+	}
+}
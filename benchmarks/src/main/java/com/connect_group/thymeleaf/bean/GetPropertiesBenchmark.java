@@ -0,0 +1,69 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link BeanProcessor#getProperties(Object)} for each shape of bean.
+ * 
+ * Run with -prof gc to see the allocation per call.
+ * 
+ * @author adam
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetPropertiesBenchmark {
+
+	@Param
+	public BenchmarkBeans.Shape shape;
+	
+	private BeanProcessor processor;
+	private Object bean;
+	
+	@Setup
+	public void setup() {
+		processor = new BeanProcessor();
+		bean = shape.create();
+	}
+	
+	@Benchmark
+	public Map<String,String> getProperties() {
+		return processor.getProperties(bean);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading a single property through each kind of {@link PropertyAccessor},
+ * compared with the Method.invoke call BeanProcessor used to make.
+ * 
+ * Lives in the same package as the dialect so it can reach the package-private accessors.
+ * 
+ * @author adam
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyAccessorBenchmark {
+
+	public static class LinkBean {
+		private final String href = "http://www.example.com";
+		private final int tabIndex = 3;
+		
+		public String getHref() { return href; }
+		public int getTabIndex() { return tabIndex; }
+	}
+	
+	private LinkBean bean;
+	private Method stringGetter;
+	private Method intGetter;
+	private PropertyAccessor reflectiveString;
+	private PropertyAccessor reflectiveInt;
+	private PropertyAccessor methodHandleString;
+	private PropertyAccessor methodHandleInt;
+	private PropertyAccessor lambdaString;
+	private PropertyAccessor lambdaInt;
+	
+	@Setup
+	public void setup() throws Exception {
+		bean = new LinkBean();
+		stringGetter = LinkBean.class.getMethod("getHref");
+		intGetter = LinkBean.class.getMethod("getTabIndex");
+		
+		reflectiveString = PropertyAccessors.reflective(stringGetter);
+		reflectiveInt = PropertyAccessors.reflective(intGetter);
+		methodHandleString = PropertyAccessors.methodHandle(stringGetter);
+		methodHandleInt = PropertyAccessors.methodHandle(intGetter);
+		lambdaString = PropertyAccessors.lambda(stringGetter);
+		lambdaInt = PropertyAccessors.lambda(intGetter);
+	}
+	
+	@Benchmark
+	public Object methodInvokeString() throws Exception {
+		return stringGetter.invoke(bean);
+	}
+
+	@Benchmark
+	public Object methodInvokeInt() throws Exception {
+		return intGetter.invoke(bean);
+	}
+
+	@Benchmark
+	public Object reflectiveString() throws Exception {
+		return reflectiveString.get(bean);
+	}
+	
+	@Benchmark
+	public Object reflectiveInt() throws Exception {
+		return reflectiveInt.get(bean);
+	}
+	
+	@Benchmark
+	public Object methodHandleString() throws Exception {
+		return methodHandleString.get(bean);
+	}
+	
+	@Benchmark
+	public Object methodHandleInt() throws Exception {
+		return methodHandleInt.get(bean);
+	}
+	
+	@Benchmark
+	public Object lambdaString() throws Exception {
+		return lambdaString.get(bean);
+	}
+	
+	@Benchmark
+	public Object lambdaInt() throws Exception {
+		return lambdaInt.get(bean);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.thymeleaf.TemplateProcessingParameters;
+import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
+import org.thymeleaf.templateresolver.TemplateResolver;
+
+/**
+ * Treats the template name as the template itself.
+ */
+public class StringTemplateResolver extends TemplateResolver {
+	
+	public StringTemplateResolver() {
+		super();
+		setTemplateMode(StandardTemplateModeHandlers.XHTML.getTemplateModeName());
+		setCharacterEncoding("UTF-8");
+		setResourceResolver(new IResourceResolver() {
+			public String getName() {
+				return "STRING";
+			}
+			
+			public InputStream getResourceAsStream(TemplateProcessingParameters templateProcessingParameters, String resourceName) {
+				try {
+					return new ByteArrayInputStream(resourceName.getBytes("UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+}
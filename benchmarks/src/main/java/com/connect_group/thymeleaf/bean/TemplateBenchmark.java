@@ -0,0 +1,105 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+/**
+ * A listing page rendered end to end: a standalone TemplateEngine with the BeanDialect,
+ * iterating over cards of each bean shape.
+ * 
+ * The threaded benchmark measures throughput with several requests rendering at once,
+ * which is where contention on shared caches would show.
+ * 
+ * @author adam
+ *
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+	
+	private static final String TEMPLATE = 
+			"<html xmlns:th=\"http://www.thymeleaf.org\" xmlns:bean=\"http://www.connect-group.com/thymeleaf-bean\">" +
+			"<body><ul>" +
+			"<li th:each=\"card : ${cards}\"><a class=\"card\" bean:use=\"${card}\">Card</a></li>" +
+			"</ul></body></html>";
+
+	@Param({"REFLECTIVE", "GENERATED"})
+	public ProcessingMode mode;
+	
+	@Param({"POJO", "MAP", "DATA_MAP", "COLLECTIONS"})
+	public BenchmarkBeans.Shape shape;
+	
+	@Param({"200"})
+	public int cards;
+	
+	private TemplateEngine engine;
+	private Context context;
+	
+	@Setup
+	public void setup() {
+		engine = new TemplateEngine();
+		engine.setTemplateResolver(new StringTemplateResolver());
+		engine.addDialect(new BeanDialect(mode));
+		
+		List<Object> beans = new ArrayList<Object>();
+		for(int i=0; i<cards; i++) {
+			beans.add(shape.create());
+		}
+		context = new Context();
+		context.setVariable("cards", beans);
+		
+		// Parse and cache the template before measuring.
+		engine.process(TEMPLATE, context);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	public String page() {
+		return engine.process(TEMPLATE, context);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Threads(4)
+	public String pageConcurrent() {
+		return engine.process(TEMPLATE, context);
+	}
+}
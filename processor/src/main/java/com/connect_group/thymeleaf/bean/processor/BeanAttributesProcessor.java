@@ -0,0 +1,326 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a BeanAttributeBinder for every class annotated with @BeanAttributes,
+ * and registers them all in META-INF/services so that the BeanDialect can find them.
+ * 
+ * The properties found here, and the attribute names they are given, follow the same rules
+ * as java.beans.Introspector and BeanProcessor; a generated binder produces exactly the
+ * attributes that introspection would.
+ * 
+ * @author adam
+ *
+ */
+@SupportedAnnotationTypes(BeanAttributesProcessor.ANNOTATION)
+public class BeanAttributesProcessor extends AbstractProcessor {
+	
+	static final String ANNOTATION = "com.connect_group.thymeleaf.bean.BeanAttributes";
+	static final String BINDER_INTERFACE = "com.connect_group.thymeleaf.bean.BeanAttributeBinder";
+	static final String BINDER_BASE_CLASS = "com.connect_group.thymeleaf.bean.AbstractBeanAttributeBinder";
+	static final String BINDER_SUFFIX = "_BeanAttributeBinder";
+	
+	private final Set<String> binders = new TreeSet<String>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for(TypeElement annotation : annotations) {
+			for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if(isBindable(element)) {
+					generateBinder((TypeElement)element);
+				}
+			}
+		}
+		
+		if(roundEnv.processingOver() && !binders.isEmpty()) {
+			writeServices();
+		}
+		return true;
+	}
+
+	private boolean isBindable(final Element element) {
+		if(element.getKind()!=ElementKind.CLASS) {
+			error(element, "@BeanAttributes can only be applied to classes");
+			return false;
+		}
+		
+		if(element.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(element, "@BeanAttributes cannot be applied to an abstract class; binders are matched on the exact class of the bean");
+			return false;
+		}
+		
+		for(Element e = element; e.getKind()==ElementKind.CLASS; e = e.getEnclosingElement()) {
+			if(e.getModifiers().contains(Modifier.PRIVATE)) {
+				error(element, "@BeanAttributes cannot be applied to a private class");
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private void generateBinder(final TypeElement type) {
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String binderName = binderSimpleName(type);
+		String beanName = type.getQualifiedName().toString();
+		
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(qualify(packageName, binderName), type);
+			PrintWriter out = new PrintWriter(file.openWriter());
+			try {
+				writeBinder(out, packageName, binderName, beanName, getProperties(type));
+			} finally {
+				out.close();
+			}
+			binders.add(qualify(packageName, binderName));
+		} catch (IOException e) {
+			error(type, "Could not write " + binderName + ": " + e.getMessage());
+		}
+	}
+	
+	private void writeBinder(final PrintWriter out, final String packageName, final String binderName, final String beanName, final Map<String, ExecutableElement> properties) {
+		if(packageName.length()>0) {
+			out.println("package " + packageName + ";");
+			out.println();
+		}
+		out.println("/**");
+		out.println(" * Generated by " + BeanAttributesProcessor.class.getName() + " from {@link " + beanName + "}.  Do not edit.");
+		out.println(" */");
+		out.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+		out.println("public final class " + binderName + " extends " + BINDER_BASE_CLASS + "<" + beanName + "> {");
+		out.println();
+		out.println("\tpublic " + binderName + "() {");
+		out.println("\t\tsuper(" + beanName + ".class);");
+		out.println("\t}");
+		out.println();
+		out.println("\tpublic void bind(final " + beanName + " bean, final java.util.Map<String,String> attributes) {");
+		
+		for(Map.Entry<String, ExecutableElement> property : properties.entrySet()) {
+			String propertyName = property.getKey();
+			ExecutableElement getter = property.getValue();
+			String attributeName = processName(propertyName);
+			
+			String name = "\"" + propertyName + "\"";
+			
+			// Failures go to the reader's GetterFailurePolicy, as they do for introspected getters.
+			out.println("\t\tif(call(attributes, " + name + ")) {");
+			if("data".equals(attributeName) && isMap(getter.getReturnType())) {
+				out.println("\t\t\ttry { data(attributes, bean." + getter.getSimpleName() + "()); succeeded(attributes, " + name + "); } catch (Exception e) { failed(attributes, " + name + ", e); }");
+			} else {
+				out.println("\t\t\ttry { property(attributes, \"" + attributeName + "\", bean." + getter.getSimpleName() + "(), " + name + "); succeeded(attributes, " + name + "); } catch (Exception e) { failed(attributes, " + name + ", e); }");
+			}
+			out.println("\t\t}");
+		}
+		
+		out.println("\t}");
+		out.println("}");
+	}
+	
+	/**
+	 * @return the readable, non-indexed properties of the type, sorted by name as the Introspector would.
+	 */
+	Map<String, ExecutableElement> getProperties(final TypeElement type) {
+		Map<String, ExecutableElement> getters = new TreeMap<String, ExecutableElement>();
+		Set<String> indexed = new TreeSet<String>();
+		List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+		for(ExecutableElement method : methods) {
+			Set<Modifier> modifiers = method.getModifiers();
+			if(!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+				continue;
+			}
+			
+			String name = method.getSimpleName().toString();
+			TypeMirror returnType = method.getReturnType();
+			if(returnType.getKind()==TypeKind.VOID) {
+				continue;
+			}
+			
+			if(method.getParameters().size()==1 && name.startsWith("get") && name.length()>3
+					&& method.getParameters().get(0).asType().getKind()==TypeKind.INT) {
+				indexed.add(decapitalize(name.substring(3)));
+				continue;
+			}
+			
+			if(!method.getParameters().isEmpty()) {
+				continue;
+			}
+			
+			if(name.startsWith("is") && name.length()>2 && returnType.getKind()==TypeKind.BOOLEAN) {
+				// is- takes priority over get- for the same boolean property.
+				getters.put(decapitalize(name.substring(2)), method);
+			} else if(name.startsWith("get") && name.length()>3) {
+				String property = decapitalize(name.substring(3));
+				ExecutableElement existing = getters.get(property);
+				if(existing==null || !existing.getSimpleName().toString().startsWith("is")) {
+					getters.put(property, method);
+				}
+			}
+		}
+		
+		getters.remove("class");
+		
+		// An array getter paired with an indexed getter becomes an indexed property, which the BeanProcessor ignores.
+		for(String property : indexed) {
+			ExecutableElement getter = getters.get(property);
+			if(getter!=null && getter.getReturnType() instanceof ArrayType) {
+				getters.remove(property);
+			}
+		}
+		
+		return getters;
+	}
+	
+	private boolean isMap(final TypeMirror type) {
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror map = types.erasure(processingEnv.getElementUtils().getTypeElement("java.util.Map").asType());
+		return types.isAssignable(types.erasure(type), map);
+	}
+	
+	private void writeServices() {
+		Filer filer = processingEnv.getFiler();
+		String resource = "META-INF/services/" + BINDER_INTERFACE;
+		
+		// Keep binders generated by earlier, incremental, compilations.
+		try {
+			FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", resource);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+			try {
+				String line;
+				while((line = reader.readLine())!=null) {
+					if(line.trim().length()>0) {
+						binders.add(line.trim());
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+		}
+		
+		try {
+			FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+			Writer out = file.openWriter();
+			try {
+				for(String binder : binders) {
+					out.write(binder);
+					out.write("\n");
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + resource + ": " + e.getMessage());
+		}
+	}
+	
+	private void error(final Element element, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+	
+	static String binderSimpleName(final TypeElement type) {
+		StringBuilder name = new StringBuilder(type.getSimpleName());
+		for(Element e = type.getEnclosingElement(); e.getKind()==ElementKind.CLASS; e = e.getEnclosingElement()) {
+			name.insert(0, '_').insert(0, e.getSimpleName());
+		}
+		return name.append(BINDER_SUFFIX).toString();
+	}
+	
+	private static String qualify(final String packageName, final String simpleName) {
+		return packageName.length()==0 ? simpleName : packageName + "." + simpleName;
+	}
+	
+	/**
+	 * Same as java.beans.Introspector.decapitalize, which is not available to every compiler.
+	 */
+	static String decapitalize(final String name) {
+		if(name.length()>1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		char[] chars = name.toCharArray();
+		chars[0] = Character.toLowerCase(chars[0]);
+		return new String(chars);
+	}
+	
+	/**
+	 * Same as BeanProcessor.processName.
+	 */
+	static String processName(final String name) {
+		if("cssClass".equals(name)) {
+			return "class";
+		}
+		
+		if(name.length()>4 && name.startsWith("data") && isUppercase(name.charAt(4))) {
+			StringBuilder uncamel = new StringBuilder();
+			for(int i=0; i<name.length(); i++) {
+				char c = name.charAt(i);
+				if(isUppercase(c)) {
+					uncamel.append("-");
+				}
+				uncamel.append(c);
+			}
+			return uncamel.toString().toLowerCase();
+		}
+		
+		return name;
+	}
+	
+	private static boolean isUppercase(char c) {
+		return (c>='A' && c<='Z');
+	}
+}
@@ -0,0 +1,223 @@
+package com.connect_group.thymeleaf.bean.processor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.connect_group.thymeleaf.bean.BeanAttributeBinder;
+import com.connect_group.thymeleaf.bean.BeanAttributeBinders;
+import com.connect_group.thymeleaf.bean.BeanAttributeReader;
+import com.connect_group.thymeleaf.bean.BeanProcessor;
+import com.connect_group.thymeleaf.bean.BeanPropertyException;
+import com.connect_group.thymeleaf.bean.BeanSettings;
+import com.connect_group.thymeleaf.bean.GetterFailurePolicy;
+import com.connect_group.thymeleaf.bean.ProcessingMode;
+
+public class BeanAttributesProcessorTests {
+	
+	private static final String LINK_BEAN = 
+			"package example;\n" +
+			"import java.util.*;\n" +
+			"@com.connect_group.thymeleaf.bean.BeanAttributes\n" +
+			"public class LinkBean {\n" +
+			"	public String getHref() { return \"http://www.example.com\"; }\n" +
+			"	public String getTitle() { return \"\"; }\n" +
+			"	public boolean isDisabled() { return true; }\n" +
+			"	public boolean getHidden() { return false; }\n" +
+			"	public List<String> getCssClass() { return Arrays.asList(\"abc\", \"def\"); }\n" +
+			"	public int[] getDataIds() { return new int[] {1, 2, 3}; }\n" +
+			"	public String getURL() { return \"upper\"; }\n" +
+			"	public String getBroken() throws java.io.IOException { throw new java.io.IOException(); }\n" +
+			"	public String getText() { return \"link text\"; }\n" +
+			"	public static String getStatic() { return \"static\"; }\n" +
+			"	public String get() { return \"not a property\"; }\n" +
+			"	public Map<String,Object> getData() {\n" +
+			"		Map<String,Object> map = new HashMap<String,Object>();\n" +
+			"		map.put(\"x\", \"y\");\n" +
+			"		map.put(\"flag\", Boolean.FALSE);\n" +
+			"		return map;\n" +
+			"	}\n" +
+			"	@com.connect_group.thymeleaf.bean.BeanAttributes\n" +
+			"	public static class Nested {\n" +
+			"		public String getAlt() { return \"alternative\"; }\n" +
+			"	}\n" +
+			"}\n";
+	
+	private File output;
+	
+	@Before
+	public void setup() throws IOException {
+		output = File.createTempFile("binders", "");
+		output.delete();
+		output.mkdirs();
+	}
+	
+	@After
+	public void cleanup() {
+		delete(output);
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children!=null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	@Test
+	public void testGeneratedBinderMatchesIntrospection() throws Exception {
+		ClassLoader loader = compile(LINK_BEAN);
+		
+		BeanAttributeBinders binders = BeanAttributeBinders.load(loader);
+		assertEquals(2, binders.size());
+		
+		Class<?> beanClass = loader.loadClass("example.LinkBean");
+		Object bean = beanClass.newInstance();
+		
+		@SuppressWarnings("unchecked")
+		BeanAttributeBinder<Object> binder = (BeanAttributeBinder<Object>)binders.get(beanClass);
+		assertNotNull(binder);
+		assertEquals("example.LinkBean_BeanAttributeBinder", binder.getClass().getName());
+		
+		Map<String,String> bound = new HashMap<String,String>();
+		binder.bind(bean, bound);
+		
+		assertEquals(new ExposedBeanProcessor(BeanAttributeBinders.NONE).getProperties(bean), bound);
+		assertEquals("abc def", bound.get("class"));
+		assertEquals("1 2 3", bound.get("data-ids"));
+		assertEquals("disabled", bound.get("disabled"));
+		assertEquals("upper", bound.get("URL"));
+		assertEquals("false", bound.get("data-flag"));
+		assertFalse(bound.containsKey("static"));
+		
+		Class<?> nestedClass = loader.loadClass("example.LinkBean$Nested");
+		assertNotNull(binders.get(nestedClass));
+	}
+	
+	@Test
+	public void testBeanProcessorPrefersBinder() throws Exception {
+		ClassLoader loader = compile(LINK_BEAN);
+		Object bean = loader.loadClass("example.LinkBean").newInstance();
+		
+		ExposedBeanProcessor processor = new ExposedBeanProcessor(BeanAttributeBinders.load(loader));
+		assertEquals(new ExposedBeanProcessor(BeanAttributeBinders.NONE).getProperties(bean), processor.getProperties(bean));
+	}
+	
+	@Test
+	public void testBinderFailuresGoToThePolicy() throws Exception {
+		ClassLoader loader = compile(LINK_BEAN);
+		Object bean = loader.loadClass("example.LinkBean").newInstance();
+		
+		GetterFailurePolicy policy = new GetterFailurePolicy();
+		BeanSettings settings = new BeanSettings();
+		settings.setFailurePolicy(policy);
+		BeanAttributeReader reader = settings.createReader(BeanAttributeBinders.load(loader));
+		assertEquals("upper", reader.getProperties(bean).get("URL"));
+		assertEquals(1, policy.getFailures());
+		assertEquals(Long.valueOf(1), policy.getFailuresByProperty().get("example.LinkBean.broken"));
+		
+		settings.setFailurePolicy(GetterFailurePolicy.strict());
+		BeanAttributeReader strict = settings.createReader(BeanAttributeBinders.load(loader));
+		try {
+			strict.getProperties(bean);
+			fail("Expected the broken getter to be thrown");
+		} catch (BeanPropertyException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+	
+	@Test
+	public void testAbstractClassIsRejected() throws Exception {
+		List<Diagnostic<? extends JavaFileObject>> errors = compileWithErrors(
+				"package example;\n" +
+				"@com.connect_group.thymeleaf.bean.BeanAttributes\n" +
+				"public abstract class AbstractBean {\n" +
+				"	public String getHref() { return \"\"; }\n" +
+				"}\n");
+		
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).getMessage(null).contains("abstract"));
+	}
+	
+	@Test
+	public void testNames() {
+		assertEquals("URL", BeanAttributesProcessor.decapitalize("URL"));
+		assertEquals("href", BeanAttributesProcessor.decapitalize("Href"));
+		assertEquals("class", BeanAttributesProcessor.processName("cssClass"));
+		assertEquals("data-mobile-url", BeanAttributesProcessor.processName("dataMobileUrl"));
+		assertEquals("database", BeanAttributesProcessor.processName("database"));
+	}
+	
+	private ClassLoader compile(String source) throws Exception {
+		assertTrue(compileWithErrors(source).isEmpty());
+		return new URLClassLoader(new URL[] { output.toURI().toURL() }, getClass().getClassLoader());
+	}
+	
+	private List<Diagnostic<? extends JavaFileObject>> compileWithErrors(String source) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		
+		String classpath = new File(BeanAttributeBinder.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		List<String> options = Arrays.asList("-classpath", classpath, "-d", output.getPath());
+		
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(new Source(source)));
+		task.setProcessors(Arrays.asList(new BeanAttributesProcessor()));
+		task.call();
+		
+		List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+		for(Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if(diagnostic.getKind()==Diagnostic.Kind.ERROR) {
+				errors.add(diagnostic);
+			}
+		}
+		return errors;
+	}
+	
+	private static class ExposedBeanProcessor extends BeanProcessor {
+		ExposedBeanProcessor(BeanAttributeBinders binders) {
+			super(ProcessingMode.REFLECTIVE, binders);
+		}
+		
+		@Override
+		public Map<String,String> getProperties(Object obj) {
+			return super.getProperties(obj);
+		}
+	}
+	
+	private static class Source extends SimpleJavaFileObject {
+		private final String source;
+		
+		Source(String source) {
+			super(URI.create("string:///example/" + source.replaceAll("(?s).*public (abstract )?class (\\w+).*", "$2") + ".java"), Kind.SOURCE);
+			this.source = source;
+		}
+		
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base class for generated binders, providing the same value conversions as the {@link BeanProcessor}.
+ * 
+ * A generated binder reports each getter to {@link #call}, {@link #succeeded} and {@link #failed}, so that when the
+ * reader binds a bean its {@link GetterFailurePolicy} applies just as it does to introspected getters.
+ * 
+ * @param <T> the bean class.
+ * @author adam
+ *
+ */
+public abstract class AbstractBeanAttributeBinder<T> implements BeanAttributeBinder<T> {
+
+	private final Class<T> beanClass;
+	private final ConcurrentMap<String,GetterState> states = new ConcurrentHashMap<String,GetterState>();
+	
+	protected AbstractBeanAttributeBinder(Class<T> beanClass) {
+		this.beanClass = beanClass;
+	}
+	
+	public final Class<T> getBeanClass() {
+		return beanClass;
+	}
+	
+	/**
+	 * Add a property value as an attribute, unless it converts to an empty string.
+	 * 
+	 * @param booleanTrueResult the value to use if the property is Boolean.TRUE; normally the property name.
+	 */
+	protected final void property(final Map<String,String> attributes, final String attributeName, final Object value, final String booleanTrueResult) {
+		String result = AttributeValues.asString(value, booleanTrueResult, null);
+		if(!AttributeNames.isEmpty(result)) {
+			attributes.put(attributeName, result);
+		}
+	}
+	
+	/**
+	 * Add the String keys of a getData() map as data- attributes.
+	 */
+	protected final void data(final Map<String,String> attributes, final Map<?,?> data) {
+		if(data!=null) {
+			for(Entry<?,?> entry : data.entrySet()) {
+				if(entry.getKey() instanceof String) {
+					attributes.put(AttributeNames.dataAttributeName((String)entry.getKey()), AttributeValues.asString(entry.getValue(), "true", "false"));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return false if the property's getter must not be called now, because its breaker is open.
+	 */
+	protected final boolean call(final Map<String,String> attributes, final String propertyName) {
+		return !(attributes instanceof BoundAttributes) || !((BoundAttributes)attributes).policy.isOpen(state(propertyName));
+	}
+	
+	protected final void succeeded(final Map<String,String> attributes, final String propertyName) {
+		if(attributes instanceof BoundAttributes) {
+			((BoundAttributes)attributes).policy.succeeded(state(propertyName));
+		}
+	}
+	
+	/**
+	 * Report a getter which threw.  Bound outside a reader, the property is simply left out.
+	 */
+	protected final void failed(final Map<String,String> attributes, final String propertyName, final Exception failure) {
+		if(attributes instanceof BoundAttributes) {
+			((BoundAttributes)attributes).policy.failed(state(propertyName), beanClass, failure);
+		}
+	}
+	
+	private GetterState state(final String propertyName) {
+		GetterState state = states.get(propertyName);
+		if(state==null) {
+			final GetterState created = new GetterState(propertyName);
+			state = states.putIfAbsent(propertyName, created);
+			if(state==null) {
+				state = created;
+			}
+		}
+		return state;
+	}
+	
+	/**
+	 * The attributes map a reader binds into, carrying the reader's failure policy.
+	 */
+	static final class BoundAttributes extends HashMap<String,String> {
+		private static final long serialVersionUID = 1L;
+		
+		final transient GetterFailurePolicy policy;
+		
+		BoundAttributes(final GetterFailurePolicy policy) {
+			this.policy = policy;
+		}
+	}
+}
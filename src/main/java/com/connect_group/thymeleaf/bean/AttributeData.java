@@ -19,6 +19,7 @@
  */
 package com.connect_group.thymeleaf.bean;
 
+import org.thymeleaf.Arguments;
 import org.thymeleaf.dom.Element;
 
 public class AttributeData {
@@ -26,19 +27,73 @@ public class AttributeData {
 	public final Element element;
 	public final String attributeValue;
 	public final Object evaluatedAttributeValue;
+	
+	/**
+	 * @deprecated use {@link #getEvaluatedAttributeValueString()}, which is only worked out when it is read.  
+	 * This is only filled in for processors which read it; see {@link BaseAttributeProcessor#usesDeprecatedAttributeFields()}.
+	 */
+	@Deprecated
 	public final String evaluatedAttributeValueString;
+	
+	/**
+	 * @deprecated use {@link #getContextRoot()}, which is only worked out when it is read.  
+	 * This is only filled in for processors which read it, and is null where there is no context root, as in a standalone context.
+	 */
+	@Deprecated
 	public final String contextRoot;
 	
+	private final Arguments arguments;
+	private final BaseAttributeProcessor processor;
+	private String lazyContextRoot;
+	private String lazyEvaluatedAttributeValueString;
+	
 	public AttributeData(String attributeName, Element element, Object evaluatedAttributeValue, String contextRoot) {
+		this(attributeName, element, element.getAttributeValue(attributeName), evaluatedAttributeValue, null, null, 
+				evaluatedAttributeValue==null ? "" : evaluatedAttributeValue.toString(), contextRoot);
+	}
+	
+	/**
+	 * @param fillDeprecatedFields true to work out the deprecated fields now, for processors which read them.
+	 */
+	AttributeData(String attributeName, Element element, String attributeValue, Object evaluatedAttributeValue, Arguments arguments, BaseAttributeProcessor processor, boolean fillDeprecatedFields) {
+		this(attributeName, element, attributeValue, evaluatedAttributeValue, arguments, processor, 
+				fillDeprecatedFields ? (evaluatedAttributeValue==null ? "" : evaluatedAttributeValue.toString()) : null,
+				fillDeprecatedFields ? processor.findContextRoot(arguments) : null);
+	}
+	
+	@SuppressWarnings("deprecation")
+	private AttributeData(String attributeName, Element element, String attributeValue, Object evaluatedAttributeValue, Arguments arguments, BaseAttributeProcessor processor, 
+			String evaluatedAttributeValueString, String contextRoot) {
 		this.attributeName = attributeName;
 		this.element = element;
-		this.attributeValue = element.getAttributeValue(attributeName);
+		this.attributeValue = attributeValue;
 		this.evaluatedAttributeValue = evaluatedAttributeValue;
+		this.arguments = arguments;
+		this.processor = processor;
+		this.evaluatedAttributeValueString = evaluatedAttributeValueString;
 		this.contextRoot = contextRoot;
-		if(evaluatedAttributeValue!=null) evaluatedAttributeValueString = evaluatedAttributeValue.toString();
-		else evaluatedAttributeValueString="";
-		
-		
+		this.lazyEvaluatedAttributeValueString = evaluatedAttributeValueString;
+		this.lazyContextRoot = contextRoot;
+	}
+	
+	/**
+	 * The evaluated value's toString(), or "" if it is null; worked out on first use, as toString() may be expensive.
+	 */
+	public String getEvaluatedAttributeValueString() {
+		if(lazyEvaluatedAttributeValueString==null) {
+			lazyEvaluatedAttributeValueString = evaluatedAttributeValue==null ? "" : evaluatedAttributeValue.toString();
+		}
+		return lazyEvaluatedAttributeValueString;
+	}
+	
+	/**
+	 * The result of @{'/'}, evaluated on first use.
+	 */
+	public String getContextRoot() {
+		if(lazyContextRoot==null && processor!=null) {
+			lazyContextRoot = processor.getContextRoot(arguments);
+		}
+		return lazyContextRoot;
 	}
 	
 }
@@ -0,0 +1,89 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The compiled form of bean:only and bean:except.
+ * 
+ * Each is a comma separated list of names; a name matches a property by its property name ("cssClass")
+ * or its attribute name ("class").  Maps, AttributeSources and compiled binders are filtered by attribute name only.
+ * 
+ * Each bean class's plan keeps a reduced plan for the filter, so the getters of excluded properties are never called.
+ * 
+ * @author adam
+ *
+ */
+final class AttributeFilter {
+	
+	private final Set<String> only;
+	private final Set<String> except;
+	
+	private AttributeFilter(Set<String> only, Set<String> except) {
+		this.only = only;
+		this.except = except;
+	}
+	
+	/**
+	 * @param only the names to include, or null to include everything not excepted.
+	 * @param except the names to exclude, or null.
+	 * @return the filter, or null if neither list is given.
+	 */
+	static AttributeFilter compile(final String only, final String except) {
+		if(only==null && except==null) {
+			return null;
+		}
+		Set<String> exceptNames = split(except);
+		return new AttributeFilter(only==null ? null : split(only), exceptNames);
+	}
+	
+	boolean accepts(final String attributeName) {
+		return (only==null || only.contains(attributeName)) && !except.contains(attributeName);
+	}
+	
+	boolean accepts(final PropertyPlan property) {
+		if(only!=null && !only.contains(property.propertyName) && !only.contains(property.attributeName)) {
+			return false;
+		}
+		return !except.contains(property.propertyName) && !except.contains(property.attributeName);
+	}
+	
+	BeanPlan filter(final BeanPlan plan) {
+		return plan.filter(this);
+	}
+	
+	private static Set<String> split(final String names) {
+		if(names==null) {
+			return Collections.emptySet();
+		}
+		
+		Set<String> result = new HashSet<String>();
+		for(String name : names.split(",")) {
+			name = name.trim();
+			if(name.length()>0) {
+				result.add(name);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The rules which turn bean property names into attribute names.
+ * 
+ *     cssClass         becomes class
+ *     dataMobileUrl    becomes data-mobile-url
+ * 
+ * @author adam
+ *
+ */
+final class AttributeNames {
+	
+	// getData() keys come from user code; only a bounded number of short ones are remembered.
+	static final int MAXIMUM_CACHED_NAMES = 1024;
+	static final int MAXIMUM_CACHED_NAME_LENGTH = 64;
+	
+	private static final NameCache DATA_NAMES = new NameCache();
+	private static final NameCache UNCAMELLED_NAMES = new NameCache();
+	
+	private AttributeNames() {
+	}
+	
+	/**
+	 * @return data- followed by the key of a getData() map entry; the same String each time for the keys a page keeps using.
+	 */
+	static String dataAttributeName(final String key) {
+		String name = DATA_NAMES.get(key);
+		if(name==null) {
+			name = DATA_NAMES.put(key, "data-" + key);
+		}
+		return name;
+	}
+
+	static String processName(final String name) {
+		String newName = name;
+		
+		if("cssClass".equals(name)) {
+			newName="class";
+		} else if(isDataAttribute(name)){
+			newName = UNCAMELLED_NAMES.get(name);
+			if(newName==null) {
+				newName = UNCAMELLED_NAMES.put(name, uncamel(name));
+			}
+		}
+		return newName;
+	}
+
+	static String uncamel(String name) {
+		StringBuilder uncamel = new StringBuilder();
+		
+		for(int i=0; i<name.length(); i++) {
+			char c = name.charAt(i);
+			if(isUppercase(c)) {
+				uncamel.append("-");
+			}
+			uncamel.append(c);
+		}
+		
+		return uncamel.toString().toLowerCase();
+	}
+
+	static boolean isDataAttribute(String name) {
+		return (name.length()>4 && name.startsWith("data") && isUppercase(name.charAt(4)));
+	}
+	
+	static boolean isUppercase(char c) {
+		return (c>='A' && c<='Z');
+	}
+	
+	static boolean isEmpty(String value) {
+		return value==null || value.length()==0;
+	}
+	
+	static int cachedDataAttributeNames() {
+		return DATA_NAMES.names.size();
+	}
+	
+	/**
+	 * Stops taking new names once full, rather than evicting; a page's vocabulary of names is small and stable.
+	 */
+	private static final class NameCache {
+		final ConcurrentHashMap<String,String> names = new ConcurrentHashMap<String,String>();
+		
+		String get(final String key) {
+			return names.get(key);
+		}
+		
+		/**
+		 * @return the cached name, which may have been put by another thread, or the given one if it is not cached.
+		 */
+		String put(final String key, final String name) {
+			if(key.length()>MAXIMUM_CACHED_NAME_LENGTH || names.size()>=MAXIMUM_CACHED_NAMES) {
+				return name;
+			}
+			String existing = names.putIfAbsent(key, name);
+			return existing==null ? name : existing;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * An object which already knows its attributes, as names and string values.
+ * 
+ * When bean:use evaluates to an AttributeSource its attributes are applied to the element as they are visited;
+ * the object is not introspected and no map of attributes is built.
+ * 
+ * As with a Map, an empty value removes the attribute, and the names "text" and "utext" set the element's body.
+ * 
+ * @author adam
+ *
+ */
+public interface AttributeSource {
+
+	void visitAttributes(Visitor visitor);
+	
+	public interface Visitor {
+		void attribute(String name, String value);
+	}
+	
+}
@@ -0,0 +1,64 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.thymeleaf.dom.Element;
+
+/**
+ * Applies attribute values to an element, touching the element only when its value would change.
+ * 
+ * Token list attributes, such as class, can be merged rather than replaced: the tokens already on the element 
+ * are kept, the bean's tokens are added after them, and duplicates are dropped.  An empty value leaves a merged attribute alone.
+ * 
+ * @author adam
+ *
+ */
+final class AttributeUpdater {
+	
+	static final AttributeUpdater DEFAULT = new AttributeUpdater(Collections.<String>emptySet());
+	
+	private final Set<String> mergedAttributes;
+	
+	AttributeUpdater(final Collection<String> mergedAttributes) {
+		this.mergedAttributes = mergedAttributes.isEmpty() ? Collections.<String>emptySet() : new HashSet<String>(mergedAttributes);
+	}
+	
+	void set(final Element element, final String name, String value) {
+		final String existing = element.getAttributeValue(name);
+		if(mergedAttributes.contains(name)) {
+			value = AttributeValues.mergeTokens(existing==null ? "" : existing, value);
+		}
+		
+		if(!value.equals(existing)) {
+			element.setAttribute(name, value);
+		}
+	}
+	
+	void remove(final Element element, final String name) {
+		if(!mergedAttributes.contains(name) && element.getAttributeValue(name)!=null) {
+			element.removeAttribute(name);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Converts property values to attribute strings.
+ * 
+ * Collections and arrays become a single string with each value separated by a single space;
+ * nested collections and arrays are flattened the same way.
+ * 
+ * Values are appended straight into one StringBuilder sized from the number of elements, primitives
+ * without boxing, so a collection or array allocates little more than the builder and the resulting String.
+ * Empty and single element collections do not need a builder at all.
+ * 
+ * @author adam
+ *
+ */
+final class AttributeValues {
+	
+	/** A guess at the characters per element, separator included, for sizing the builder. */
+	private static final int CHARS_PER_ELEMENT = 8;
+	
+	private AttributeValues() {
+	}
+	
+	/**
+	 * @return the whitespace separated tokens of both values, each once, in the order first seen.
+	 */
+	static String mergeTokens(final String existing, final String added) {
+		List<String> tokens = new ArrayList<String>();
+		addTokens(tokens, existing);
+		addTokens(tokens, added);
+		
+		StringBuilder str = new StringBuilder(existing.length() + added.length() + 1);
+		for(String token : tokens) {
+			if(str.length()>0) {
+				str.append(' ');
+			}
+			str.append(token);
+		}
+		return str.toString();
+	}
+	
+	private static void addTokens(final List<String> tokens, final String value) {
+		int length = value.length();
+		int start = -1;
+		for(int i=0; i<=length; i++) {
+			if(i==length || Character.isWhitespace(value.charAt(i))) {
+				if(start>=0) {
+					String token = value.substring(start, i);
+					if(!tokens.contains(token)) {
+						tokens.add(token);
+					}
+					start = -1;
+				}
+			} else if(start<0) {
+				start = i;
+			}
+		}
+	}
+	
+	static String asString(final Object obj, final String booleanTrueResult, final String booleanFalseResult) {
+		if(obj==null) {
+			return null;
+		}
+		
+		if(obj instanceof String) {
+			return (String)obj;
+		}
+		
+		if(obj instanceof Boolean) {
+			return ((Boolean)obj).booleanValue() ? booleanTrueResult : booleanFalseResult;
+		}
+		
+		if(obj instanceof Collection<?>) {
+			Collection<?> collection = (Collection<?>)obj;
+			int size = collection.size();
+			if(size==0) {
+				return "";
+			}
+			if(size==1) {
+				return String.valueOf(asElementString(first(collection)));
+			}
+		} else if(obj instanceof Object[] && ((Object[])obj).length<2) {
+			Object[] arr = (Object[])obj;
+			return arr.length==0 ? "" : String.valueOf(asElementString(arr[0]));
+		} else if(obj instanceof char[]) {
+			return asString((char[])obj);
+		} else if(!isSequence(obj)) {
+			return obj.toString();
+		}
+		
+		StringBuilder str = new StringBuilder(initialCapacity(obj));
+		appendElements(str, obj);
+		return str.toString();
+	}
+	
+	/**
+	 * @return room for the top level elements of a collection or array; nested ones grow the builder as they go.
+	 */
+	private static int initialCapacity(final Object obj) {
+		int elements = obj instanceof Collection<?> ? ((Collection<?>)obj).size()
+				: obj.getClass().isArray() ? Array.getLength(obj)
+				: 2;
+		return (int) Math.min((long)elements * CHARS_PER_ELEMENT, Integer.MAX_VALUE - 8);
+	}
+	
+	private static String asElementString(final Object o) {
+		return asString(o, "true", "false");
+	}
+	
+	private static Object first(final Collection<?> collection) {
+		if(collection instanceof List<?> && collection instanceof RandomAccess) {
+			return ((List<?>)collection).get(0);
+		}
+		return collection.iterator().next();
+	}
+	
+	/**
+	 * A char array is the only case whose length is known up front, so it skips the builder.
+	 */
+	private static String asString(final char[] arr) {
+		if(arr.length==0) {
+			return "";
+		}
+		
+		char[] chars = new char[arr.length*2-1];
+		for(int i=0; i<arr.length; i++) {
+			if(i>0) chars[i*2-1]=' ';
+			chars[i*2] = arr[i];
+		}
+		return new String(chars);
+	}
+	
+	/**
+	 * Append each element of a collection or array, separated by spaces.
+	 * Separators are relative to where this collection starts in the builder, 
+	 * so nested values come out exactly as if they had been converted on their own.
+	 */
+	private static void appendElements(final StringBuilder str, final Object obj) {
+		final int start = str.length();
+		
+		if(obj instanceof Iterable<?>) {
+			Iterator<?> it = ((Iterable<?>)obj).iterator();
+			while(it.hasNext()) {
+				appendElement(str, start, it.next());
+			}
+		} else if(obj instanceof Object[]) {
+			for(Object o : (Object[])obj) {
+				appendElement(str, start, o);
+			}
+		} else if(obj instanceof int[]) {
+			int[] arr = (int[])obj;
+			str.ensureCapacity(start + arr.length*4);
+			for(int i : arr) {
+				separate(str, start).append(i);
+			}
+		} else if(obj instanceof long[]) {
+			long[] arr = (long[])obj;
+			str.ensureCapacity(start + arr.length*6);
+			for(long l : arr) {
+				separate(str, start).append(l);
+			}
+		} else if(obj instanceof double[]) {
+			double[] arr = (double[])obj;
+			str.ensureCapacity(start + arr.length*6);
+			for(double d : arr) {
+				separate(str, start).append(d);
+			}
+		} else if(obj instanceof float[]) {
+			float[] arr = (float[])obj;
+			str.ensureCapacity(start + arr.length*6);
+			for(float f : arr) {
+				separate(str, start).append(f);
+			}
+		} else if(obj instanceof byte[]) {
+			byte[] arr = (byte[])obj;
+			str.ensureCapacity(start + arr.length*4);
+			for(byte b : arr) {
+				separate(str, start).append(b);
+			}
+		} else if(obj instanceof short[]) {
+			short[] arr = (short[])obj;
+			str.ensureCapacity(start + arr.length*4);
+			for(short s : arr) {
+				separate(str, start).append(s);
+			}
+		} else if(obj instanceof char[]) {
+			char[] arr = (char[])obj;
+			str.ensureCapacity(start + arr.length*2);
+			for(char c : arr) {
+				separate(str, start).append(c);
+			}
+		}
+	}
+	
+	private static void appendElement(final StringBuilder str, final int start, final Object o) {
+		separate(str, start);
+		
+		if(isSequence(o)) {
+			appendElements(str, o);
+		} else if(o instanceof String) {
+			str.append((String)o);
+		} else if(o instanceof Boolean) {
+			str.append(((Boolean)o).booleanValue() ? "true" : "false");
+		} else {
+			// Includes null, which has always been written as "null".
+			str.append(o);
+		}
+	}
+	
+	/**
+	 * @return true for values written as space separated lists; boolean[] has never been one of them.
+	 */
+	private static boolean isSequence(final Object o) {
+		return o instanceof Iterable<?> || (o!=null && o.getClass().isArray() && !(o instanceof boolean[]));
+	}
+	
+	private static StringBuilder separate(final StringBuilder str, final int start) {
+		if(str.length()!=start) {
+			str.append(' ');
+		}
+		return str;
+	}
+}
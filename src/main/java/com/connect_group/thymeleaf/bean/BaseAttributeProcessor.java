@@ -20,11 +20,15 @@
 package com.connect_group.thymeleaf.bean;
 
 
+import java.util.Collection;
 import java.util.Map;
 
 import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Document;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.dom.Node;
+import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.processor.AbstractProcessor;
 import org.thymeleaf.processor.AttributeNameProcessorMatcher;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
@@ -43,20 +47,33 @@ import org.thymeleaf.standard.expression.StandardExpressions;
 public abstract class BaseAttributeProcessor extends AbstractProcessor {
 	
 	private final IAttributeNameProcessorMatcher matcher;
+	private final ExpressionCache expressions = new ExpressionCache();
+	private AttributeUpdater updater = AttributeUpdater.DEFAULT;
+	private volatile PrefixedNames prefixedNames;
+	private final boolean deprecatedAttributeFields;
+	
+	private static final String CONTEXT_ROOT_PROPERTY = BaseAttributeProcessor.class.getName() + ".contextRoot";
+	private static final Object NO_CONTEXT_ROOT = new Object();
 	
 	public BaseAttributeProcessor(String attributeNameWithoutNamespace) {
 		matcher = new AttributeNameProcessorMatcher(attributeNameWithoutNamespace);
+		deprecatedAttributeFields = overridesDoProcess(getClass());
 	}
 	
 	@Override
 	protected final ProcessorResult doProcess(final Arguments arguments, final ProcessorMatchingContext processorMatchingContext, final Node node) {
 		Element element = (Element)node;
 		String attributeName = getAttributeName(processorMatchingContext, element);
+		String attributeValue = element.getAttributeValue(attributeName);
 
-		Object evaluated = parseExpression(arguments, element.getAttributeValue(attributeName));
-		String contextRoot = getContextRoot(arguments);
+		final BeanMetricsListener metrics = getMetricsListener();
+		final long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+		Object evaluated = parseExpression(arguments, getExpression(attributeValue));
+		if(metrics.isEnabled()) {
+			metrics.expressionEvaluated(System.nanoTime() - start);
+		}
 		
-		AttributeData attrData = new AttributeData(attributeName, element, evaluated, contextRoot);
+		AttributeData attrData = new AttributeData(attributeName, element, attributeValue, evaluated, arguments, this, usesDeprecatedAttributeFields());
 		
 		ProcessorResult result = doProcess(arguments, attrData);
 		attrData.element.removeAttribute(attrData.attributeName);
@@ -79,9 +96,44 @@ public abstract class BaseAttributeProcessor extends AbstractProcessor {
 	
 	protected abstract ProcessorResult doProcess(final Arguments arguments, AttributeData data);
 	
+	/**
+	 * @return true to fill in {@link AttributeData}'s deprecated evaluatedAttributeValueString and contextRoot fields,
+	 * which costs a toString() for every element.  By default they are filled in for any processor which overrides 
+	 * doProcess, other than this library's own, which only use the getters.
+	 */
+	protected boolean usesDeprecatedAttributeFields() {
+		return deprecatedAttributeFields;
+	}
+	
+	private static boolean overridesDoProcess(final Class<?> processorClass) {
+		for(Class<?> type = processorClass; type!=BaseAttributeProcessor.class; type = type.getSuperclass()) {
+			if(type==BeanProcessor.class || type==BeanEachProcessor.class || type==BeanCacheProcessor.class) {
+				return false;
+			}
+			try {
+				type.getDeclaredMethod("doProcess", Arguments.class, AttributeData.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// Inherited; look further up.
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the part of the attribute value which is the expression to evaluate.
+	 */
+	protected String getExpression(final String attributeValue) {
+		return attributeValue;
+	}
+	
+	protected BeanMetricsListener getMetricsListener() {
+		return BeanMetricsListener.NONE;
+	}
+	
 	protected String getAttributeName(final ProcessorMatchingContext processorMatchingContext, Element element) {
 		String result = "";
-		String[] attributeNames = this.matcher.getAttributeNames(processorMatchingContext);
+		String[] attributeNames = getAttributeNames(processorMatchingContext);
 		if(attributeNames!=null && attributeNames.length>0) {
 	        for (final String attributeName : attributeNames) {
 	            if (element.hasNormalizedAttribute(attributeName)) {
@@ -93,15 +145,81 @@ public abstract class BaseAttributeProcessor extends AbstractProcessor {
 		return result;
 	}
 	
-	private String getContextRoot(Arguments arguments) {
-		String root=(String) parseExpression(arguments, "@{'/'}");
+	/**
+	 * The matcher builds the prefixed names afresh on every call; they only change with the dialect prefix.
+	 */
+	private String[] getAttributeNames(final ProcessorMatchingContext processorMatchingContext) {
+		final String prefix = processorMatchingContext.getDialectPrefix();
+		PrefixedNames names = prefixedNames;
+		if(names==null || !(prefix==null ? names.prefix==null : prefix.equals(names.prefix))) {
+			names = new PrefixedNames(prefix, this.matcher.getAttributeNames(processorMatchingContext));
+			prefixedNames = names;
+		}
+		return names.attributeNames;
+	}
+	
+	/**
+	 * The context root is only worked out when a processor asks for it, and then once per template execution.
+	 */
+	String getContextRoot(final Arguments arguments) {
+		final Object cached = getExecutionProperty(arguments, CONTEXT_ROOT_PROPERTY);
+		if(cached instanceof String) {
+			return (String) cached;
+		}
+		final String root = (String) parseExpression(arguments, "@{'/'}");
+		if(root!=null) {
+			setExecutionProperty(arguments, CONTEXT_ROOT_PROPERTY, root);
+		}
 		return root;
 	}
+	
+	/**
+	 * @return the context root, or null if there is none, as in a standalone context; worked out once per template execution.
+	 */
+	String findContextRoot(final Arguments arguments) {
+		final Object root = getExecutionProperty(arguments, CONTEXT_ROOT_PROPERTY);
+		if(root!=null) {
+			return root instanceof String ? (String) root : null;
+		}
+		try {
+			return getContextRoot(arguments);
+		} catch (TemplateProcessingException e) {
+			setExecutionProperty(arguments, CONTEXT_ROOT_PROPERTY, NO_CONTEXT_ROOT);
+			return null;
+		}
+	}
+	
+	/**
+	 * Each execution works on its own copy of the parsed document, so a property of the document lives exactly 
+	 * as long as the execution, and is only ever touched by the thread rendering it.
+	 */
+	static Object getExecutionProperty(final Arguments arguments, final String name) {
+		final Document document = arguments.getDocument();
+		return document==null ? null : document.getNodeProperty(name);
+	}
+	
+	static void setExecutionProperty(final Arguments arguments, final String name, final Object value) {
+		final Document document = arguments.getDocument();
+		if(document!=null) {
+			document.setNodeProperty(name, value);
+		}
+	}
 
 	protected Object parseExpression(final Arguments arguments, final String expressionString) {
-        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(arguments.getConfiguration());
-        final IStandardExpression expression = expressionParser.parseExpression(arguments.getConfiguration(), arguments, expressionString);
-        final Object value = expression.execute(arguments.getConfiguration(), arguments);
+		final Configuration configuration = arguments.getConfiguration();
+		IStandardExpression expression = expressions.get(configuration, expressionString);
+		final BeanMetricsListener metrics = getMetricsListener();
+		if(metrics.isEnabled()) {
+			metrics.cacheAccessed(BeanMetricsListener.EXPRESSION_CACHE, expression!=null);
+		}
+		
+		if(expression==null) {
+			final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+			expression = expressionParser.parseExpression(configuration, arguments, expressionString);
+			expressions.put(configuration, expressionString, expression);
+		}
+		
+        final Object value = expression.execute(configuration, arguments);
 
         return value;
 	}
@@ -109,34 +227,49 @@ public abstract class BaseAttributeProcessor extends AbstractProcessor {
     protected final ProcessorResult updateAttributes(Element element, Map<String,String> modifiedAttributeValues) {
         
         for (final Map.Entry<String,String> modifiedAttributeEntry : modifiedAttributeValues.entrySet()) {
-
-            
-            final String modifiedAttributeName = modifiedAttributeEntry.getKey();
-            if(!isIgnoredAttribute(modifiedAttributeName)) {
-	            String newAttributeValue = modifiedAttributeEntry.getValue();
-	            
-	            newAttributeValue = defaultToNull(newAttributeValue);
-	
-	            final boolean removeAttributeIfEmpty =
-	                removeAttributeIfEmpty(modifiedAttributeName);
-	            
-	            // Do NOT use trim() here! Non-thymeleaf attributes set to ' ' could have meaning!
-	            if (removeAttributeIfEmpty && newAttributeValue == null) {
-	                element.removeAttribute(modifiedAttributeName);
-	            } else {
-	                element.setAttribute(modifiedAttributeName, defaultToEmpty(newAttributeValue));
-	            }
-            }            
+            updateAttribute(element, modifiedAttributeEntry.getKey(), modifiedAttributeEntry.getValue());
         }
         
         return ProcessorResult.OK;
         
     }
 
+    protected final void updateAttribute(Element element, String modifiedAttributeName, String newAttributeValue) {
+        if(!isIgnoredAttribute(modifiedAttributeName)) {
+            newAttributeValue = defaultToNull(newAttributeValue);
+
+            final boolean removeAttributeIfEmpty =
+                removeAttributeIfEmpty(modifiedAttributeName);
+            
+            // Do NOT use trim() here! Non-thymeleaf attributes set to ' ' could have meaning!
+            if (removeAttributeIfEmpty && newAttributeValue == null) {
+                updater.remove(element, modifiedAttributeName);
+            } else {
+                updater.set(element, modifiedAttributeName, defaultToEmpty(newAttributeValue));
+            }
+        }
+    }
+    
+    /**
+     * Merge, rather than replace, the whitespace separated tokens of these attributes; e.g. class.
+     */
+    protected final void setMergedAttributes(Collection<String> attributeNames) {
+        updater = attributeNames==null || attributeNames.isEmpty() ? AttributeUpdater.DEFAULT : new AttributeUpdater(attributeNames);
+    }
+
 	protected abstract boolean isIgnoredAttribute(String modifiedAttributeName);
 
 	protected boolean removeAttributeIfEmpty(String modifiedAttributeName) {
 		return true;
 	}
+	
+	private static final class PrefixedNames {
+		final String prefix;
+		final String[] attributeNames;
+		
+		PrefixedNames(String prefix, String[] attributeNames) {
+			this.prefix = prefix;
+			this.attributeNames = attributeNames;
+		}
+	}
 }
-
@@ -0,0 +1,44 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Map;
+
+/**
+ * Converts beans of a single class into attributes without reflection.
+ * 
+ * Binders are normally generated for classes annotated with {@link BeanAttributes},
+ * and are found through {@link java.util.ServiceLoader}.  
+ * Implementations should extend {@link AbstractBeanAttributeBinder}.
+ * 
+ * @param <T> the bean class.
+ * @author adam
+ *
+ */
+public interface BeanAttributeBinder<T> {
+
+	Class<T> getBeanClass();
+	
+	/**
+	 * Add the bean's attributes to the map, following the same rules as {@link BeanProcessor#getProperties(Object)}.
+	 */
+	void bind(T bean, Map<String,String> attributes);
+	
+}
@@ -0,0 +1,84 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link BeanAttributeBinder}s available to a dialect, by bean class.
+ * 
+ * @author adam
+ *
+ */
+public final class BeanAttributeBinders {
+	
+	public static final BeanAttributeBinders NONE = new BeanAttributeBinders(Collections.<BeanAttributeBinder<?>>emptyList());
+	
+	private final Map<Class<?>, BeanAttributeBinder<?>> binders = new HashMap<Class<?>, BeanAttributeBinder<?>>();
+	
+	public BeanAttributeBinders(Iterable<? extends BeanAttributeBinder<?>> binders) {
+		for(BeanAttributeBinder<?> binder : binders) {
+			this.binders.put(binder.getBeanClass(), binder);
+		}
+	}
+	
+	/**
+	 * Find every binder registered in META-INF/services visible from the class loader.
+	 * Binders which cannot be instantiated are skipped; those beans will simply be introspected.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static BeanAttributeBinders load(final ClassLoader classLoader) {
+		Map<Class<?>, BeanAttributeBinder<?>> found = new HashMap<Class<?>, BeanAttributeBinder<?>>();
+		
+		Iterator<BeanAttributeBinder> it = ServiceLoader.load(BeanAttributeBinder.class, classLoader).iterator();
+		while(hasNext(it)) {
+			try {
+				BeanAttributeBinder<?> binder = it.next();
+				found.put(binder.getBeanClass(), binder);
+			} catch (ServiceConfigurationError e) {
+			}
+		}
+		
+		return new BeanAttributeBinders(found.values());
+	}
+	
+	private static boolean hasNext(final Iterator<?> it) {
+		try {
+			return it.hasNext();
+		} catch (ServiceConfigurationError e) {
+			// A broken services file; stop rather than risk failing on it forever.
+			return false;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T> BeanAttributeBinder<T> get(final Class<T> beanClass) {
+		return (BeanAttributeBinder<T>)binders.get(beanClass);
+	}
+	
+	public int size() {
+		return binders.size();
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the attributes read from {@link ImmutableBean}s and {@link VersionedBean}s.
+ * 
+ * Entries are keyed by bean identity and hold the bean weakly, so a cached bean can still be collected.
+ * The cache is split into stripes by identity hash, each with its own lock and an equal share of the
+ * maximum size, and the least recently used entry of a stripe is evicted when that stripe is full.
+ * Caches smaller than {@value #ENTRIES_PER_STRIPE} entries use a single stripe.
+ * 
+ *     dialect.setAttributeMemo(new BeanAttributeMemo(10000));
+ * 
+ * @author adam
+ *
+ */
+public final class BeanAttributeMemo {
+	
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+	
+	private static final String[] NO_ATTRIBUTES = new String[0];
+	private static final int ENTRIES_PER_STRIPE = 64;
+	private static final int MAXIMUM_STRIPES = 16;
+
+	private final int maximumSize;
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+	private final Stripe[] stripes;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	public BeanAttributeMemo() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+	
+	public BeanAttributeMemo(final int maximumSize) {
+		if(maximumSize<1) {
+			throw new IllegalArgumentException("Maximum size must be at least 1");
+		}
+		this.maximumSize = maximumSize;
+		
+		int count = Integer.highestOneBit(Math.max(1, Math.min(MAXIMUM_STRIPES, maximumSize / ENTRIES_PER_STRIPE)));
+		this.stripes = new Stripe[count];
+		for(int i=0; i<count; i++) {
+			stripes[i] = new Stripe(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+		}
+	}
+	
+	/**
+	 * @return the attributes as name, value pairs, or null if they must be read again.
+	 */
+	String[] get(final Object bean, final Object version) {
+		expunge();
+		final int hash = System.identityHashCode(bean);
+		final Stripe stripe = stripeFor(hash);
+		Memo memo;
+		synchronized(stripe) {
+			memo = stripe.get(new LookupKey(bean, hash));
+		}
+		if(memo!=null && (version==null ? memo.version==null : version.equals(memo.version))) {
+			hits.increment();
+			return memo.attributes;
+		}
+		misses.increment();
+		return null;
+	}
+	
+	/**
+	 * @return the attributes, as name, value pairs, in the map's order.
+	 */
+	String[] put(final Object bean, final Object version, final Map<String,String> attributes) {
+		String[] pairs = NO_ATTRIBUTES;
+		if(!attributes.isEmpty()) {
+			pairs = new String[attributes.size()*2];
+			int i=0;
+			for(Map.Entry<String,String> entry : attributes.entrySet()) {
+				pairs[i++] = entry.getKey();
+				pairs[i++] = entry.getValue();
+			}
+		}
+		
+		expunge();
+		final BeanKey key = new BeanKey(bean, collected);
+		final Stripe stripe = stripeFor(key.hash);
+		synchronized(stripe) {
+			stripe.put(key, new Memo(version, pairs));
+		}
+		return pairs;
+	}
+	
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	public int size() {
+		expunge();
+		int size = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+	
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the number of entries removed to make room; collected beans are not counted.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return hits as a fraction of all lookups, or 0 if there have been none.
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long lookups = hits + getMisses();
+		return lookups==0 ? 0D : (double)hits / lookups;
+	}
+	
+	public void clear() {
+		expunge();
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				stripe.clear();
+			}
+		}
+	}
+	
+	private Stripe stripeFor(final int hash) {
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+	
+	private void expunge() {
+		Object key;
+		while((key = collected.poll())!=null) {
+			Stripe stripe = stripeFor(((BeanKey)key).hash);
+			synchronized(stripe) {
+				stripe.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * One lock's worth of entries, in least recently used order.
+	 */
+	private final class Stripe extends LinkedHashMap<Object, Memo> {
+		private static final long serialVersionUID = 1L;
+		
+		private final int maximumSize;
+		
+		Stripe(int maximumSize) {
+			super(16, 0.75f, true);
+			this.maximumSize = maximumSize;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Memo> eldest) {
+			if(size()>maximumSize) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	private static final class Memo {
+		final Object version;
+		final String[] attributes;
+		
+		Memo(Object version, String[] attributes) {
+			this.version = version;
+			this.attributes = attributes;
+		}
+	}
+	
+	/**
+	 * Identity of a weakly held bean.  A collected key is only equal to itself, so it can still be removed.
+	 */
+	private static final class BeanKey extends WeakReference<Object> {
+		final int hash;
+		
+		BeanKey(Object bean, ReferenceQueue<Object> queue) {
+			super(bean, queue);
+			this.hash = System.identityHashCode(bean);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) {
+				return true;
+			}
+			if(obj instanceof LookupKey) {
+				return ((LookupKey)obj).bean==get();
+			}
+			if(!(obj instanceof BeanKey)) {
+				return false;
+			}
+			Object bean = get();
+			return bean!=null && bean==((BeanKey)obj).get();
+		}
+	}
+	
+	/**
+	 * Finds a bean's entry without creating a reference to it; never stored in the map.
+	 */
+	private static final class LookupKey {
+		final Object bean;
+		final int hash;
+		
+		LookupKey(Object bean, int hash) {
+			this.bean = bean;
+			this.hash = hash;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof BeanKey && ((BeanKey)obj).get()==bean;
+		}
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Reads the attributes of a bean, Map or {@link AttributeSource}, following the rules described on {@link BeanProcessor}.
+ * 
+ * This is the part of the bean processor which does not depend on Thymeleaf; 
+ * it is shared by the Thymeleaf 2 processor and can be used by other template engines.
+ * 
+ * A reader caches the plan of every bean class it sees, and is safe to share between threads.
+ * Create one with {@link BeanSettings#createReader}.
+ * 
+ * @author adam
+ *
+ */
+public final class BeanAttributeReader {
+	
+	private final BeanPlanCache plans;
+	private final BeanAttributeBinders binders;
+	private final BeanMetricsListener metrics;
+	private final BeanAttributeMemo memo;
+	private final PropertyPrefetcher prefetcher;
+	private final GetterFailurePolicy policy;
+	private final GetterProfiler profiler;
+	
+	/**
+	 * @param settings read once, here; see {@link BeanSettings#createReader}.
+	 */
+	BeanAttributeReader(BeanAttributeBinders binders, BeanSettings settings) {
+		this.binders = binders;
+		this.metrics = settings.getMetricsListener();
+		this.memo = settings.getAttributeMemo();
+		this.prefetcher = settings.getPrefetcher();
+		this.policy = settings.getFailurePolicy();
+		this.profiler = settings.getGetterProfiler();
+		this.plans = new BeanPlanCache(metrics, settings.getMaximumPlanCacheSize());
+	}
+	
+	/**
+	 * Visit each attribute in the order it should be applied.
+	 * 
+	 * A later attribute replaces an earlier one of the same name.  A null or empty value means the attribute should be removed.
+	 * The names "text" and "utext" are the escaped and unescaped body of the element.
+	 * A null bean has no attributes.
+	 */
+	public void read(final Object bean, final AttributeSource.Visitor visitor) {
+		read(bean, null, visitor);
+	}
+	
+	/**
+	 * @param filter the attributes to read, or null for all of them.  A filtered bean is never memoized.
+	 */
+	void read(final Object bean, final AttributeFilter filter, final AttributeSource.Visitor visitor) {
+		if(bean==null) {
+			return;
+		}
+		
+		if(bean instanceof AttributeSource) {
+			((AttributeSource)bean).visitAttributes(filter==null ? visitor : new FilteringVisitor(filter, visitor));
+		} else if(bean instanceof Map<?,?>) {
+			readMap((Map<?,?>)bean, filter, visitor);
+		} else if(filter==null && isMemoized(bean)) {
+			readMemo(bean, visitor);
+		} else {
+			readObject(bean, filter, visitor);
+		}
+	}
+	
+	/**
+	 * @return true if the bean's attributes are replayed from the memo rather than read each time.
+	 */
+	public boolean isMemoized(final Object bean) {
+		if(memo==null || bean==null || bean instanceof Map<?,?> || bean instanceof AttributeSource) {
+			return false;
+		}
+		if(bean instanceof VersionedBean) {
+			return true;
+		}
+		// A bound class is never introspected, so its annotation is read directly.
+		return getBinder(bean.getClass())!=null
+				? BeanPlanCache.getUserClass(bean.getClass()).isAnnotationPresent(ImmutableBean.class)
+				: plans.get(bean.getClass()).immutable;
+	}
+	
+	/**
+	 * @return the attributes of the bean, by name.
+	 */
+	public Map<String,String> getProperties(final Object bean) {
+		return getProperties(bean, null);
+	}
+	
+	Map<String,String> getProperties(final Object bean, final AttributeFilter filter) {
+		final HashMap<String,String> map = new HashMap<String,String>();
+		read(bean, filter, new AttributeSource.Visitor() {
+			public void attribute(String name, String value) {
+				map.put(name, value);
+			}
+		});
+		return map;
+	}
+	
+	private void readMemo(final Object bean, final AttributeSource.Visitor visitor) {
+		final Object version = bean instanceof VersionedBean ? ((VersionedBean)bean).attributeVersion() : null;
+		String[] attributes = memo.get(bean, version);
+		if(metrics.isEnabled()) {
+			metrics.cacheAccessed(BeanMetricsListener.MEMO_CACHE, attributes!=null);
+		}
+		
+		if(attributes==null) {
+			final HashMap<String,String> map = new HashMap<String,String>();
+			readObject(bean, null, new AttributeSource.Visitor() {
+				public void attribute(String name, String value) {
+					map.put(name, value);
+				}
+			});
+			attributes = memo.put(bean, version, map);
+		}
+		
+		for(int i=0; i<attributes.length; i+=2) {
+			visitor.attribute(attributes[i], attributes[i+1]);
+		}
+	}
+	
+	private void readObject(final Object bean, final AttributeFilter filter, final AttributeSource.Visitor visitor) {
+		// A binder calls every getter; the filtered plan only calls those the filter accepts.
+		BeanAttributeBinder<Object> binder = filter==null ? getBinder(bean.getClass()) : null;
+		if(binder!=null) {
+			Map<String,String> bound = new AbstractBeanAttributeBinder.BoundAttributes(policy);
+			binder.bind(bean, bound);
+			for(Entry<String,String> entry : bound.entrySet()) {
+				visitor.attribute(entry.getKey(), entry.getValue());
+			}
+		} else {
+			BeanPlan plan = plans.get(bean.getClass());
+			readBean(bean, filter==null ? plan : filter.filter(plan), visitor);
+		}
+	}
+	
+	/**
+	 * @return the binder for the class, or null if its beans are read through a plan.
+	 */
+	@SuppressWarnings("unchecked")
+	BeanAttributeBinder<Object> getBinder(final Class<?> beanClass) {
+		return binders.size()==0 ? null : (BeanAttributeBinder<Object>)binders.get(BeanPlanCache.getUserClass(beanClass));
+	}
+	
+	/**
+	 * Introspect the class ahead of its first bean, unless a binder reads it.
+	 */
+	void prepare(final Class<?> beanClass) {
+		if(getBinder(beanClass)==null) {
+			plans.get(beanClass);
+		}
+	}
+	
+	BeanPlan getPlan(final Class<?> beanClass) {
+		return plans.get(beanClass);
+	}
+	
+	GetterFailurePolicy getFailurePolicy() {
+		return policy;
+	}
+	
+	GetterProfiler getProfiler() {
+		return profiler;
+	}
+	
+	BeanPlanCache getPlanCache() {
+		return plans;
+	}
+	
+	private static void readMap(final Map<?,?> map, final AttributeFilter filter, final AttributeSource.Visitor visitor) {
+		for(Entry<?,?> entry : map.entrySet()) {
+			if(entry.getKey() instanceof String) {
+				String name = (String) entry.getKey();
+				if(filter!=null && !filter.accepts(name)) {
+					continue;
+				}
+				
+				String value = AttributeValues.asString(entry.getValue(),name,null);
+				
+				if(value!=null) {
+					visitor.attribute(name, value);
+				}
+			}
+		}
+	}
+	
+	private void readBean(final Object bean, final BeanPlan plan, final AttributeSource.Visitor visitor) {
+		if(plan.deferred) {
+			readDeferredBean(bean, plan, visitor);
+			return;
+		}
+		
+		for(PropertyPlan property : plan.properties) {
+			if(property.dataMap) {
+				readDataAttributes(property, bean, visitor);
+			} else {
+				String result = getResult(property, bean);
+				if(!AttributeNames.isEmpty(result)) {
+					visitor.attribute(property.attributeName, result);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Every Supplier and Future is started before any of them is waited for.
+	 */
+	private void readDeferredBean(final Object bean, final BeanPlan plan, final AttributeSource.Visitor visitor) {
+		final Object[] started = prefetcher.start(bean, plan, policy, profiler);
+		final long deadline = prefetcher.deadline();
+		
+		for(int i=0; i<plan.properties.length; i++) {
+			PropertyPlan property = plan.properties[i];
+			if(property.dataMap) {
+				readDataAttributes(property, bean, visitor);
+			} else {
+				String result = property.valueKind==PropertyPlan.ValueKind.DEFERRED
+						? AttributeValues.asString(prefetcher.join(started, i, deadline, property, bean.getClass(), policy), property.booleanTrueResult, null)
+						: getResult(property, bean);
+				if(!AttributeNames.isEmpty(result)) {
+					visitor.attribute(property.attributeName, result);
+				}
+			}
+		}
+	}
+	
+	private void readDataAttributes(final PropertyPlan property, final Object bean, final AttributeSource.Visitor visitor) {
+		if(policy.isOpen(property)) {
+			return;
+		}
+		
+		try {
+			Map<?,?> map = (Map<?,?>)GetterProfiler.get(profiler, property, bean);
+			if(map!=null) {
+				for(Entry<?,?> entry : map.entrySet()) {
+					if(entry.getKey() instanceof String) {
+						String name=AttributeNames.dataAttributeName((String)entry.getKey());
+						String value=AttributeValues.asString(entry.getValue(), "true", "false");
+						visitor.attribute(name, value);
+					}
+				}
+			}
+			policy.succeeded(property);
+		} catch (Exception e) {
+			policy.failed(property, bean.getClass(), e);
+		}
+	}
+
+	private String getResult(final PropertyPlan property, final Object bean) {
+		if(property.isFolded()) {
+			return property.getConstantValue();
+		}
+		if(policy.isOpen(property)) {
+			return null;
+		}
+		
+		try {
+			Object value = GetterProfiler.get(profiler, property, bean);
+			policy.succeeded(property);
+			String result;
+			switch(property.valueKind) {
+			case STRING:
+				result = (String)value;
+				break;
+			case BOOLEAN:
+				result = (value!=null && ((Boolean)value).booleanValue()) ? property.booleanTrueResult : null;
+				break;
+			default:
+				result = AttributeValues.asString(value, property.booleanTrueResult, null);
+			}
+			if(property.constant) {
+				property.fold(result);
+			}
+			return result;
+		} catch (Exception e) {
+			policy.failed(property, bean.getClass(), e);
+		}
+		return null;
+	}
+	
+	private static final class FilteringVisitor implements AttributeSource.Visitor {
+		private final AttributeFilter filter;
+		private final AttributeSource.Visitor visitor;
+		
+		FilteringVisitor(AttributeFilter filter, AttributeSource.Visitor visitor) {
+			this.filter = filter;
+			this.visitor = visitor;
+		}
+
+		public void attribute(String name, String value) {
+			if(filter.accepts(name)) {
+				visitor.attribute(name, value);
+			}
+		}
+	}
+}
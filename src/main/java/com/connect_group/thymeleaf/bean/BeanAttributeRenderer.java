@@ -0,0 +1,239 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a bean's attributes as HTML, straight to an {@link Appendable}, without Thymeleaf.
+ * 
+ * The same rules as bean:use decide the attributes: getters become attributes, cssClass becomes class,
+ * true booleans are written as name="name", collections are joined with spaces, and getData() entries
+ * and getDataXxx() properties become data- attributes.
+ * 
+ *     renderer.renderElement("a", link, out);
+ * 
+ * or, for more control over the element,
+ * 
+ *     out.append("&lt;a");
+ *     renderer.renderAttributes(link, out);
+ *     out.append('&gt;');
+ *     renderer.renderBody(link, out);
+ *     out.append("&lt;/a&gt;");
+ * 
+ * Each attribute is written with a leading space and its value escaped; no map of attributes is built.
+ * As with bean:use, if a name comes up twice the later value wins, in the earlier place, and an empty value removes
+ * the attribute.  Names cannot be escaped,
+ * so a name which is not a valid HTML attribute name, such as a getData() key containing a space or a quote, is 
+ * not written at all.
+ * 
+ * @author adam
+ *
+ */
+public final class BeanAttributeRenderer {
+	
+	private static final int MAX_SEARCHED_NAMES = 64;
+	private static final AttributeFilter BODY = AttributeFilter.compile("text,utext", null);
+	
+	private final BeanAttributeReader reader;
+	
+	public BeanAttributeRenderer() {
+		this(new BeanSettings().createReader(BeanAttributeBinders.NONE));
+	}
+	
+	/**
+	 * @param reader shares its plans, binders, memo and failure policy with any processor using the same reader.
+	 */
+	public BeanAttributeRenderer(BeanAttributeReader reader) {
+		this.reader = reader;
+	}
+	
+	/**
+	 * Write the whole element: its start tag with the bean's attributes, its body, and its end tag.  The bean is read once.
+	 */
+	public void renderElement(final String elementName, final Object bean, final Appendable out) throws IOException {
+		out.append('<').append(elementName);
+		AttributeWriter writer = render(bean, null, out);
+		out.append('>');
+		writer.renderBody();
+		out.append("</").append(elementName).append('>');
+	}
+	
+	/**
+	 * Write each attribute of the bean as name="value", each preceded by a space.  The text and utext attributes are not written.
+	 */
+	public void renderAttributes(final Object bean, final Appendable out) throws IOException {
+		render(bean, null, out);
+	}
+	
+	/**
+	 * Write the bean's text, escaped, or if it has none its utext as it is.  Only the text and utext getters are called.
+	 */
+	public void renderBody(final Object bean, final Appendable out) throws IOException {
+		render(bean, BODY, out).renderBody();
+	}
+	
+	private AttributeWriter render(final Object bean, final AttributeFilter filter, final Appendable out) throws IOException {
+		AttributeWriter writer = new AttributeWriter(out);
+		reader.read(bean, filter, writer);
+		writer.renderAttributes();
+		return writer;
+	}
+	
+	/**
+	 * Append the value with &amp;, &lt;, &gt;, " and ' escaped.
+	 */
+	static void escape(final CharSequence value, final Appendable out) throws IOException {
+		final int length = value.length();
+		int start = 0;
+		for(int i=0; i<length; i++) {
+			String replacement;
+			switch(value.charAt(i)) {
+			case '&': replacement = "&amp;"; break;
+			case '<': replacement = "&lt;"; break;
+			case '>': replacement = "&gt;"; break;
+			case '"': replacement = "&quot;"; break;
+			case '\'': replacement = "&#39;"; break;
+			default: continue;
+			}
+			out.append(value, start, i).append(replacement);
+			start = i + 1;
+		}
+		out.append(value, start, length);
+	}
+	
+	/**
+	 * @return true if the name can be written in a start tag as it is: it is not empty, and has no whitespace, 
+	 * control characters, quotes, &lt;, &gt;, &amp;, / or =.
+	 */
+	static boolean isValidName(final String name) {
+		final int length = name.length();
+		if(length==0) {
+			return false;
+		}
+		for(int i=0; i<length; i++) {
+			char c = name.charAt(i);
+			if(c<=' ' || (c>=0x7f && c<=0x9f) || c=='"' || c=='\'' || c=='>' || c=='/' || c=='=' || c=='<' || c=='&') {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static final class AttributeWriter implements AttributeSource.Visitor {
+		private final Appendable out;
+		private String[] names;
+		private String[] values;
+		private int count;
+		private Map<String,Integer> overflow;
+		private String text;
+		private String utext;
+		
+		AttributeWriter(Appendable out) {
+			this.out = out;
+		}
+		
+		public void attribute(String name, String value) {
+			if("text".equals(name)) {
+				text = value;
+				return;
+			}
+			if("utext".equals(name)) {
+				utext = value;
+				return;
+			}
+			if(!isValidName(name)) {
+				return;
+			}
+			
+			final int index = indexOf(name);
+			if(index>=0) {
+				values[index] = AttributeNames.isEmpty(value) ? null : value;
+			} else if(!AttributeNames.isEmpty(value)) {
+				add(name, value);
+			}
+		}
+		
+		void renderAttributes() throws IOException {
+			for(int i=0; i<count; i++) {
+				if(values[i]!=null) {
+					out.append(' ').append(names[i]).append("=\"");
+					escape(values[i], out);
+					out.append('"');
+				}
+			}
+		}
+		
+		void renderBody() throws IOException {
+			if(!AttributeNames.isEmpty(text)) {
+				escape(text, out);
+			} else if(!AttributeNames.isEmpty(utext)) {
+				out.append(utext);
+			}
+		}
+		
+		/**
+		 * Names are kept in an array, which is quicker to search than to hash while there are few of them.
+		 * 
+		 * @return the index of the name, or -1 if it has not been seen.
+		 */
+		private int indexOf(final String name) {
+			if(overflow!=null) {
+				Integer index = overflow.get(name);
+				return index==null ? -1 : index.intValue();
+			}
+			for(int i=0; i<count; i++) {
+				if(names[i].equals(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		
+		private void add(final String name, final String value) {
+			if(names==null) {
+				names = new String[8];
+				values = new String[8];
+			} else if(count==names.length) {
+				String[] grown = new String[count*2];
+				System.arraycopy(names, 0, grown, 0, count);
+				names = grown;
+				grown = new String[count*2];
+				System.arraycopy(values, 0, grown, 0, count);
+				values = grown;
+			}
+			
+			if(overflow==null && count==MAX_SEARCHED_NAMES) {
+				overflow = new HashMap<String,Integer>();
+				for(int i=0; i<count; i++) {
+					overflow.put(names[i], i);
+				}
+			}
+			if(overflow!=null) {
+				overflow.put(name, count);
+			}
+			names[count] = name;
+			values[count] = value;
+			count++;
+		}
+	}
+}
@@ -0,0 +1,455 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.dom.AbstractTextNode;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.dom.CDATASection;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Macro;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.dom.Text;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.processor.ProcessorResult;
+import org.thymeleaf.standard.StandardDialect;
+
+/**
+ * The bean:cache processor keeps the processed output of an element which also has bean:use,
+ * and reuses it whenever the element is rendered for the same bean version.
+ * 
+ *     &lt;nav bean:use="${menu}" bean:cache=""&gt;...&lt;/nav&gt;
+ * 
+ * The bean must be a {@link VersionedBean}, whose attributeVersion() identifies its content, or an {@link ImmutableBean},
+ * which is cached by identity; or bean:cache must give an expression for the key, e.g. bean:cache="${menu.lastModified}".
+ * Otherwise the element is processed as normal.  The element's subtree must depend only on the bean, and the locale.
+ * 
+ * On a hit a copy of the cached element replaces the original, and neither the bean's getters nor any processors
+ * within the element are run.  On a miss the element is processed as normal, and kept once its children are done.
+ * 
+ * Elements are keyed by their source: the element and its content as they stand in the template, before any of 
+ * them is processed.  Elements written the same way, in any template, render the same for the same bean.
+ * The source is worked out once for each parsed template, not on every execution.
+ * 
+ * bean:cache runs before th:each, th:case and th:if, so it cannot be used on an element which has th:each, th:case,
+ * th:if or th:unless, under whatever prefix the standard dialect is configured with; put it on a child instead.
+ * 
+ * @author adam
+ *
+ */
+public class BeanCacheProcessor extends BaseAttributeProcessor {
+	
+	public static final String ATTRIBUTE_NAME = "cache";
+	public static final int PRECEDENCE = 100;
+	
+	// Marks the element, inserted after a missed element, whose processing stores the missed element.
+	private static final String STORE_PROPERTY = BeanCacheProcessor.class.getName() + ".store";
+	
+	private static final String[] REJECTED_ATTRIBUTES = { "each", "case", "if", "unless" };
+	
+	private static final int SOURCE_STRIPES = 16;
+	
+	private final BeanFragmentCache cache;
+	private final BeanMetricsListener metrics;
+	private volatile RejectedAttributes rejected;
+	
+	// The source of each element, by its parsed bean:cache attribute; every execution of a cached template shares it.
+	private final Map<Attribute,String>[] sources;
+
+	/**
+	 * @param cache where to keep elements; if null bean:cache is removed and has no effect.
+	 */
+	public BeanCacheProcessor(BeanFragmentCache cache, BeanMetricsListener metrics) {
+		super(ATTRIBUTE_NAME);
+		this.cache = cache;
+		this.metrics = metrics==null ? BeanMetricsListener.NONE : metrics;
+		@SuppressWarnings("unchecked")
+		Map<Attribute,String>[] sources = new Map[SOURCE_STRIPES];
+		for(int i=0; i<sources.length; i++) {
+			sources[i] = new WeakHashMap<Attribute,String>();
+		}
+		this.sources = sources;
+	}
+	
+	public BeanFragmentCache getCache() {
+		return cache;
+	}
+	
+	@Override
+	protected BeanMetricsListener getMetricsListener() {
+		return metrics;
+	}
+
+	@Override
+	protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+		final Element element = data.element;
+		final NestableNode parent = element.getParent();
+		
+		final Object stored = element.getNodeProperty(STORE_PROPERTY);
+		if(stored!=null) {
+			((Store)stored).store(cache, parent);
+			parent.removeChild(element);
+			return ProcessorResult.OK;
+		}
+		
+		if(cache==null || parent==null || !data.attributeName.endsWith(ATTRIBUTE_NAME)) {
+			return ProcessorResult.OK;
+		}
+		
+		rejectIterationAndConditionals(arguments.getConfiguration(), element, data.attributeName);
+		
+		final String prefix = data.attributeName.substring(0, data.attributeName.length() - ATTRIBUTE_NAME.length());
+		final String beanExpression = element.getAttributeValue(prefix + BeanProcessor.ATTRIBUTE_NAME);
+		if(beanExpression==null) {
+			return ProcessorResult.OK;
+		}
+		
+		final Object bean = parseExpression(arguments, beanExpression);
+		final Object version = getVersion(bean, data.evaluatedAttributeValue);
+		if(version==null) {
+			return ProcessorResult.OK;
+		}
+		
+		final FragmentKey key = new FragmentKey(sourceOf(element, data.attributeName), arguments.getContext().getLocale(), bean.getClass(), version);
+		final Element cached = cache.get(key);
+		if(metrics.isEnabled()) {
+			metrics.cacheAccessed(BeanMetricsListener.FRAGMENT_CACHE, cached!=null);
+		}
+		if(cached!=null) {
+			Element copy = (Element) cached.cloneNode(parent, false);
+			copy.setProcessable(false);
+			parent.insertBefore(element, copy);
+			parent.removeChild(element);
+			return ProcessorResult.OK;
+		}
+		
+		Element marker = new Element(data.attributeName);
+		marker.setAttribute(data.attributeName, "");
+		marker.setNodeProperty(STORE_PROPERTY, new Store(key, element));
+		parent.insertAfter(element, marker);
+		return ProcessorResult.OK;
+	}
+	
+	/**
+	 * The cache is consulted before these have run, so it would skip the iteration and ignore the condition.
+	 */
+	private void rejectIterationAndConditionals(final Configuration configuration, final Element element, final String attributeName) {
+		RejectedAttributes rejected = this.rejected;
+		if(rejected==null || rejected.configuration!=configuration) {
+			rejected = new RejectedAttributes(configuration);
+			this.rejected = rejected;
+		}
+		
+		for(String name : rejected.names) {
+			if(element.hasNormalizedAttribute(name)) {
+				throw new TemplateProcessingException(attributeName + " cannot be used with " + name + "; put it on a child element instead");
+			}
+		}
+	}
+	
+	/**
+	 * @return the element's source, worked out the first time its template is executed.
+	 */
+	String sourceOf(final Element element, final String attributeName) {
+		final Attribute attribute = attribute(element, attributeName);
+		if(attribute==null) {
+			return sourceOf(element);
+		}
+		
+		// Template duplicates share their Attribute objects with the parsed template, which keeps them alive.
+		final Map<Attribute,String> stripe = sources[System.identityHashCode(attribute) & (SOURCE_STRIPES - 1)];
+		String source;
+		synchronized(stripe) {
+			source = stripe.get(attribute);
+		}
+		if(source==null) {
+			source = sourceOf(element);
+			synchronized(stripe) {
+				stripe.put(attribute, source);
+			}
+		}
+		return source;
+	}
+	
+	private static Attribute attribute(final Element element, final String attributeName) {
+		final Attribute[] attributes = element.unsafeGetAttributes();
+		for(int i=0; i<element.numAttributes(); i++) {
+			if(attributes[i].getNormalizedName().equals(attributeName)) {
+				return attributes[i];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * The element and its content as they stand before processing, written so that different content always
+	 * gives a different string: text and values are escaped, so any raw &lt; or " is markup.
+	 */
+	static String sourceOf(final Element element) {
+		StringBuilder out = new StringBuilder(256);
+		appendSource(element, out);
+		return out.toString();
+	}
+	
+	private static void appendSource(final Node node, final StringBuilder out) {
+		if(node instanceof Element) {
+			Element element = (Element) node;
+			out.append('<').append(element.getOriginalName());
+			Attribute[] attributes = element.unsafeGetAttributes();
+			for(int i=0; i<element.numAttributes(); i++) {
+				out.append(' ').append(attributes[i].getOriginalName());
+				if(attributes[i].getValue()!=null) {
+					out.append("=\"");
+					appendEscaped(attributes[i].getValue(), out);
+					out.append('"');
+				}
+			}
+			out.append('>');
+			for(Node child : element.getChildren()) {
+				appendSource(child, out);
+			}
+			out.append("</>");
+		} else if(node instanceof CDATASection) {
+			out.append("<![CDATA[");
+			appendEscaped(((CDATASection)node).getContent(), out);
+			out.append("]]>");
+		} else if(node instanceof AbstractTextNode) {
+			appendEscaped(((AbstractTextNode)node).getContent(), out);
+		} else if(node instanceof Comment) {
+			out.append("<!--");
+			appendEscaped(((Comment)node).getContent(), out);
+			out.append("-->");
+		} else if(node instanceof Macro) {
+			out.append("<?");
+			appendEscaped(((Macro)node).getContent(), out);
+			out.append("?>");
+		}
+	}
+	
+	private static void appendEscaped(final String value, final StringBuilder out) {
+		final int length = value.length();
+		for(int i=0; i<length; i++) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '&': out.append("&amp;"); break;
+			case '<': out.append("&lt;"); break;
+			case '"': out.append("&quot;"); break;
+			default: out.append(c);
+			}
+		}
+	}
+	
+	/**
+	 * @return a copy of the element and its content with none of their node local variables or properties, 
+	 * which can hold objects from the request that rendered them.
+	 */
+	static Element markupOf(final Element element) {
+		final Element copy = new Element(element.getOriginalName(), element.getRepresentationInTemplate());
+		final Attribute[] attributes = element.unsafeGetAttributes();
+		for(int i=0; i<element.numAttributes(); i++) {
+			copy.setAttribute(attributes[i].getOriginalName(), attributes[i].isOnlyName(), attributes[i].getValue());
+		}
+		for(Node child : element.getChildren()) {
+			copy.addChild(childMarkupOf(child));
+		}
+		return copy;
+	}
+	
+	private static Node childMarkupOf(final Node node) {
+		if(node instanceof Element) {
+			return markupOf((Element) node);
+		} else if(node instanceof CDATASection) {
+			return new CDATASection(((CDATASection)node).getContent(), false);
+		} else if(node instanceof Text) {
+			return new Text(((Text)node).getContent(), false);
+		} else if(node instanceof Comment) {
+			return new Comment(((Comment)node).getContent());
+		} else if(node instanceof Macro) {
+			return new Macro(((Macro)node).getContent());
+		}
+		return node.cloneNode(null, false);
+	}
+	
+	@Override
+	protected String getExpression(final String attributeValue) {
+		// An empty bean:cache takes its key from the bean.
+		return AttributeNames.isEmpty(attributeValue) || attributeValue.trim().length()==0 ? "null" : attributeValue;
+	}
+	
+	/**
+	 * @return the key which identifies this content of the bean, or null if it cannot be cached.
+	 */
+	static Object getVersion(final Object bean, final Object explicitKey) {
+		if(bean==null) {
+			return null;
+		}
+		if(explicitKey!=null) {
+			return explicitKey;
+		}
+		if(bean instanceof VersionedBean) {
+			return ((VersionedBean)bean).attributeVersion();
+		}
+		if(bean.getClass().isAnnotationPresent(ImmutableBean.class)) {
+			return new Identity(bean);
+		}
+		return null;
+	}
+	
+	@Override
+	public int getPrecedence() {
+		return PRECEDENCE;
+	}
+	
+	@Override
+	protected boolean isIgnoredAttribute(String modifiedAttributeName) {
+		return false;
+	}
+	
+	/**
+	 * The rejected attribute names under each prefix the standard dialect is configured with.
+	 */
+	private static final class RejectedAttributes {
+		private final Configuration configuration;
+		private final String[] names;
+		
+		RejectedAttributes(Configuration configuration) {
+			List<String> names = new ArrayList<String>();
+			for(Entry<String,IDialect> entry : configuration.getDialects().entrySet()) {
+				if(!(entry.getValue() instanceof StandardDialect)) {
+					continue;
+				}
+				String prefix = entry.getKey();
+				for(String name : REJECTED_ATTRIBUTES) {
+					if(prefix==null || prefix.length()==0) {
+						names.add(name);
+					} else {
+						names.add(prefix + ":" + name);
+						names.add("data-" + prefix + "-" + name);
+					}
+				}
+			}
+			this.configuration = configuration;
+			this.names = names.toArray(new String[names.size()]);
+		}
+	}
+	
+	private static final class Store {
+		private final FragmentKey key;
+		private final Element element;
+		
+		Store(FragmentKey key, Element element) {
+			this.key = key;
+			this.element = element;
+		}
+		
+		void store(final BeanFragmentCache cache, final NestableNode parent) {
+			// Another processor, such as th:if or th:replace, may have taken the element out.
+			if(element.getParent()==parent) {
+				cache.put(key, BeanFragmentCache.sizeOf(key.source), markupOf(element));
+			}
+		}
+	}
+	
+	/**
+	 * The element's source, and what it was rendered from.
+	 */
+	private static final class FragmentKey {
+		private final String source;
+		private final Locale locale;
+		private final Class<?> beanClass;
+		private final Object version;
+		private final int hash;
+		
+		FragmentKey(String source, Locale locale, Class<?> beanClass, Object version) {
+			this.source = source;
+			this.locale = locale;
+			this.beanClass = beanClass;
+			this.version = version;
+			this.hash = (((source.hashCode() * 31) + hashCode(locale)) * 31 + beanClass.hashCode()) * 31 + version.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) {
+				return true;
+			}
+			if(!(obj instanceof FragmentKey)) {
+				return false;
+			}
+			FragmentKey other = (FragmentKey) obj;
+			return hash==other.hash && beanClass==other.beanClass && equals(locale, other.locale) 
+					&& version.equals(other.version) && source.equals(other.source);
+		}
+		
+		private static int hashCode(Object value) {
+			return value==null ? 0 : value.hashCode();
+		}
+		
+		private static boolean equals(Object a, Object b) {
+			return a==null ? b==null : a.equals(b);
+		}
+	}
+	
+	/**
+	 * Identity of a weakly held {@link ImmutableBean}; a collected bean matches nothing, and its entry ages out.
+	 */
+	private static final class Identity extends WeakReference<Object> {
+		private final int hash;
+		
+		Identity(Object bean) {
+			super(bean);
+			this.hash = System.identityHashCode(bean);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) {
+				return true;
+			}
+			if(!(obj instanceof Identity)) {
+				return false;
+			}
+			Object bean = get();
+			return bean!=null && bean==((Identity)obj).get();
+		}
+	}
+}
@@ -19,17 +19,191 @@
  */
 package com.connect_group.thymeleaf.bean;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.thymeleaf.dialect.AbstractDialect;
 import org.thymeleaf.processor.IProcessor;
 
 
+/**
+ * The bean dialect for Thymeleaf 2.1.  Provides bean:use, bean:each and bean:cache.
+ * 
+ * Every setting must be made before the template engine is initialised; later changes are not seen.
+ * The settings it shares with the Thymeleaf 3 dialect are kept on its {@link BeanSettings}, 
+ * and the setters for them here are shortcuts to those.
+ * 
+ * @author adam
+ *
+ */
 public class BeanDialect extends AbstractDialect {
 
+	private final BeanSettings settings;
+	private ProcessingMode processingMode = ProcessingMode.REFLECTIVE;
+	private Set<String> mergedAttributes = Collections.emptySet();
+	private BeanFragmentCache fragmentCache;
+	private boolean deduplicateBeans;
+	private final LongAdder recomputationsSaved = new LongAdder();
+	
 	public BeanDialect() {
+		this(new BeanSettings());
+	}
+	
+	public BeanDialect(ProcessingMode processingMode) {
+		this(new BeanSettings());
+		setProcessingMode(processingMode);
+	}
+	
+	public BeanDialect(BeanSettings settings) {
 		super();
+		if(settings==null) {
+			throw new IllegalArgumentException("Settings cannot be null");
+		}
+		this.settings = settings;
+	}
+	
+	public BeanSettings getSettings() {
+		return settings;
+	}
+	
+	public ProcessingMode getProcessingMode() {
+		return processingMode;
+	}
+
+	/**
+	 * Choose between reflective processing (the default) and generated per-class attribute writers.
+	 */
+	public void setProcessingMode(ProcessingMode processingMode) {
+		if(processingMode==null) {
+			throw new IllegalArgumentException("Processing mode cannot be null");
+		}
+		this.processingMode = processingMode;
+	}
+	
+	public BeanMetricsListener getMetricsListener() {
+		return settings.getMetricsListener();
+	}
+
+	/**
+	 * @see BeanSettings#setMetricsListener
+	 */
+	public void setMetricsListener(BeanMetricsListener metricsListener) {
+		settings.setMetricsListener(metricsListener);
+	}
+	
+	public BeanAttributeMemo getAttributeMemo() {
+		return settings.getAttributeMemo();
+	}
+
+	/**
+	 * @see BeanSettings#setAttributeMemo
+	 */
+	public void setAttributeMemo(BeanAttributeMemo attributeMemo) {
+		settings.setAttributeMemo(attributeMemo);
+	}
+	
+	public PropertyPrefetcher getPrefetcher() {
+		return settings.getPrefetcher();
+	}
+
+	/**
+	 * @see BeanSettings#setPrefetcher
+	 */
+	public void setPrefetcher(PropertyPrefetcher prefetcher) {
+		settings.setPrefetcher(prefetcher);
+	}
+	
+	public Set<String> getMergedAttributes() {
+		return mergedAttributes;
+	}
+
+	/**
+	 * Attributes whose tokens are merged with the template's rather than replacing them; e.g. "class".
+	 */
+	public void setMergedAttributes(String... attributeNames) {
+		this.mergedAttributes = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(attributeNames)));
+	}
+	
+	public GetterFailurePolicy getFailurePolicy() {
+		return settings.getFailurePolicy();
+	}
+
+	/**
+	 * @see BeanSettings#setFailurePolicy
+	 */
+	public void setFailurePolicy(GetterFailurePolicy failurePolicy) {
+		settings.setFailurePolicy(failurePolicy);
+	}
+	
+	public int getMaximumPlanCacheSize() {
+		return settings.getMaximumPlanCacheSize();
+	}
+
+	/**
+	 * @see BeanSettings#setMaximumPlanCacheSize
+	 */
+	public void setMaximumPlanCacheSize(int maximumPlanCacheSize) {
+		settings.setMaximumPlanCacheSize(maximumPlanCacheSize);
+	}
+	
+	public BeanWarmUp getWarmUp() {
+		return settings.getWarmUp();
+	}
+
+	/**
+	 * @see BeanSettings#setWarmUp
+	 */
+	public void setWarmUp(BeanWarmUp warmUp) {
+		settings.setWarmUp(warmUp);
+	}
+	
+	public BeanFragmentCache getFragmentCache() {
+		return fragmentCache;
+	}
+
+	/**
+	 * Where bean:cache keeps processed elements; null, the default, leaves bean:cache with no effect.
+	 */
+	public void setFragmentCache(BeanFragmentCache fragmentCache) {
+		this.fragmentCache = fragmentCache;
+	}
+	
+	public boolean isDeduplicateBeans() {
+		return deduplicateBeans;
+	}
+
+	/**
+	 * Read each bean once per template execution, however many elements it is used on; off by default.
+	 * Beans are told apart by identity, and are assumed not to change while the template is processed.
+	 */
+	public void setDeduplicateBeans(boolean deduplicateBeans) {
+		this.deduplicateBeans = deduplicateBeans;
+	}
+	
+	/**
+	 * @return the number of times a bean's attributes were reused within a template execution, rather than read again.
+	 */
+	public long getRecomputationsSaved() {
+		return recomputationsSaved.sum();
+	}
+	
+	LongAdder getRecomputationsSavedCounter() {
+		return recomputationsSaved;
+	}
+	
+	public GetterProfiler getGetterProfiler() {
+		return settings.getGetterProfiler();
+	}
+
+	/**
+	 * @see BeanSettings#setGetterProfiler
+	 */
+	public void setGetterProfiler(GetterProfiler getterProfiler) {
+		settings.setGetterProfiler(getterProfiler);
 	}
 	
 	public String getPrefix() {
@@ -44,9 +218,25 @@ public class BeanDialect extends AbstractDialect {
 	@Override
     public Set<IProcessor> getProcessors() {
 		final Set<IProcessor> processors = new HashSet<IProcessor>();
-		processors.add(new BeanProcessor());
+		final BeanProcessor beanProcessor = new BeanProcessor(this, BeanAttributeBinders.load(getClassLoader()));
+		final BeanWarmUp warmUp = settings.getWarmUp();
+		if(warmUp!=null) {
+			warmUp.prepare(new BeanWarmUp.Preparer() {
+				public void prepare(Class<?> beanClass) {
+					beanProcessor.prepare(beanClass);
+				}
+			}, getClassLoader());
+		}
+		processors.add(beanProcessor);
+		processors.add(new BeanEachProcessor(beanProcessor));
+		processors.add(new BeanCacheProcessor(fragmentCache, settings.getMetricsListener()));
 		return processors;
 	}
+	
+	private ClassLoader getClassLoader() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return classLoader!=null ? classLoader : BeanDialect.class.getClassLoader();
+	}
 
 
 }
@@ -0,0 +1,153 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.dom.Text;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.processor.ProcessorResult;
+import org.thymeleaf.util.EvaluationUtil;
+
+/**
+ * The bean:each processor repeats its element once for each bean in a collection, 
+ * applying each bean's attributes to its copy of the element as bean:use would.
+ * 
+ *     &lt;li bean:each="${tiles}"&gt;...&lt;/li&gt;
+ * 
+ * The expression is evaluated once, and the writer (or plan) for a bean class is looked up once per run of 
+ * beans of the same class, rather than once per element.
+ * 
+ * The beans may be made available to the rest of the element by naming them, as with th:each,
+ * 
+ *     &lt;li bean:each="tile : ${tiles}"&gt;&lt;span th:text="${tile.title}"&gt;&lt;/span&gt;&lt;/li&gt;
+ * 
+ * @author adam
+ *
+ */
+public class BeanEachProcessor extends BaseAttributeProcessor {
+	
+	public static final String ATTRIBUTE_NAME = "each";
+	
+	private static final Pattern ITERATION = Pattern.compile("^\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*:\\s*(.+)$", Pattern.DOTALL);
+	
+	private final BeanProcessor beanProcessor;
+
+	/**
+	 * @param beanProcessor the bean:use processor whose caches and settings are shared.
+	 */
+	public BeanEachProcessor(BeanProcessor beanProcessor) {
+		super(ATTRIBUTE_NAME);
+		this.beanProcessor = beanProcessor;
+	}
+
+	@Override
+	protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+		final Element element = data.element;
+		final NestableNode parent = element.getParent();
+		if(parent==null) {
+			throw new TemplateProcessingException("Cannot apply " + data.attributeName + " to the root element of a template");
+		}
+		
+		final String iterationVariable = getIterationVariable(data.attributeValue);
+		final List<Object> beans = EvaluationUtil.evaluateAsIterable(data.evaluatedAttributeValue);
+		final String indent = getIndent(parent, element);
+		final AttributeFilter filter = beanProcessor.getFilter(element, data.attributeName, ATTRIBUTE_NAME);
+		final boolean generated = filter==null && beanProcessor.getProcessingMode()==ProcessingMode.GENERATED;
+		final Map<Object, Map<String,String>> executionAttributes = beanProcessor.getExecutionAttributes(arguments);
+		
+		Class<?> beanClass = null;
+		BeanWriter writer = null;
+		boolean first = true;
+		for(Object bean : beans) {
+			if(generated && bean!=null && bean.getClass()!=beanClass) {
+				beanClass = bean.getClass();
+				writer = beanProcessor.getWriter(bean);
+			}
+			
+			Element clone = (Element) element.cloneNode(parent, false);
+			clone.removeAttribute(data.attributeName);
+			if(iterationVariable!=null) {
+				clone.setNodeLocalVariable(iterationVariable, bean);
+			}
+			beanProcessor.process(bean, clone, bean==null ? null : writer, filter, executionAttributes);
+			
+			if(!first && indent!=null) {
+				parent.insertBefore(element, new Text(indent));
+			}
+			parent.insertBefore(element, clone);
+			first = false;
+		}
+		
+		parent.removeChild(element);
+		return ProcessorResult.OK;
+	}
+	
+	@Override
+	protected String getExpression(final String attributeValue) {
+		Matcher matcher = ITERATION.matcher(attributeValue);
+		return matcher.matches() ? matcher.group(2) : attributeValue;
+	}
+	
+	private static String getIterationVariable(final String attributeValue) {
+		Matcher matcher = ITERATION.matcher(attributeValue);
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+	
+	/**
+	 * @return the whitespace which begins the line the element is on, so that each copy can go on its own line; or null.
+	 */
+	private static String getIndent(final NestableNode parent, final Element element) {
+		Node previous = null;
+		for(Node child : parent.getChildren()) {
+			if(child==element) {
+				break;
+			}
+			previous = child;
+		}
+		
+		if(previous instanceof Text) {
+			String content = ((Text)previous).getContent();
+			int newline = content.lastIndexOf('\n');
+			if(newline>=0 && content.substring(newline).trim().length()==0) {
+				return content.substring(newline);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int getPrecedence() {
+		return BeanProcessor.PRECEDENCE;
+	}
+
+	@Override
+	protected boolean isIgnoredAttribute(String modifiedAttributeName) {
+		return beanProcessor.isIgnoredAttribute(modifiedAttributeName);
+	}
+
+}
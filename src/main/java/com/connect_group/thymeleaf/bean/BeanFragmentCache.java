@@ -0,0 +1,242 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.thymeleaf.dom.AbstractTextNode;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Macro;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+
+/**
+ * A bounded cache of fully processed elements, for bean:cache.
+ * 
+ * Entries live for a fixed time after they are added, and the least recently used entries are evicted when
+ * there are too many of them or their estimated size is too great.
+ * 
+ *     dialect.setFragmentCache(new BeanFragmentCache(1000, 8 * 1024 * 1024, 10, TimeUnit.MINUTES));
+ * 
+ * @author adam
+ *
+ */
+public final class BeanFragmentCache {
+	
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+	public static final long DEFAULT_MAXIMUM_BYTES = 16L * 1024 * 1024;
+	
+	// A rough allowance for the objects behind each node and attribute, on top of their characters.
+	private static final int NODE_OVERHEAD = 64;
+	
+	private final int maximumSize;
+	private final long maximumBytes;
+	private final long timeToLiveNanos;
+	private final LinkedHashMap<Object, Fragment> fragments = new LinkedHashMap<Object, Fragment>(16, 0.75f, true);
+	
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+	
+	/**
+	 * 1000 elements, 16MB, and entries which never expire.
+	 */
+	public BeanFragmentCache() {
+		this(DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_BYTES, 0, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * @param maximumBytes an estimate, of two bytes per character plus a fixed overhead per node.
+	 * @param timeToLive how long an entry is used for after it is added; 0 for ever.
+	 */
+	public BeanFragmentCache(final int maximumSize, final long maximumBytes, final long timeToLive, final TimeUnit unit) {
+		if(maximumSize<1) {
+			throw new IllegalArgumentException("Maximum size must be at least 1");
+		}
+		if(maximumBytes<1) {
+			throw new IllegalArgumentException("Maximum bytes must be at least 1");
+		}
+		if(timeToLive<0) {
+			throw new IllegalArgumentException("Time to live cannot be negative");
+		}
+		this.maximumSize = maximumSize;
+		this.maximumBytes = maximumBytes;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+	}
+	
+	/**
+	 * @return the cached element, which must be cloned before use; or null.
+	 */
+	synchronized Element get(final Object key) {
+		Fragment fragment = fragments.get(key);
+		if(fragment!=null && fragment.isExpired(System.nanoTime())) {
+			remove(key, fragment);
+			expirations++;
+			fragment = null;
+		}
+		
+		if(fragment==null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return fragment.element;
+	}
+	
+	/**
+	 * Keep a processed element, which must not be changed afterwards.  An element larger than the whole cache is not kept.
+	 * The key's own size is not counted.
+	 */
+	void put(final Object key, final Element element) {
+		put(key, 0L, element);
+	}
+	
+	/**
+	 * @param keyBytes the estimated size of the key, which counts towards the maximum bytes along with the element.
+	 */
+	synchronized void put(final Object key, final long keyBytes, final Element element) {
+		final long size = keyBytes + sizeOf(element);
+		if(size>maximumBytes) {
+			return;
+		}
+		
+		Fragment previous = fragments.remove(key);
+		if(previous!=null) {
+			bytes -= previous.bytes;
+		}
+		fragments.put(key, new Fragment(element, size, timeToLiveNanos==0 ? 0L : System.nanoTime() + timeToLiveNanos));
+		bytes += size;
+		
+		Iterator<Fragment> eldest = fragments.values().iterator();
+		while((fragments.size()>maximumSize || bytes>maximumBytes) && eldest.hasNext()) {
+			Fragment fragment = eldest.next();
+			eldest.remove();
+			bytes -= fragment.bytes;
+			evictions++;
+		}
+	}
+	
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	public long getMaximumBytes() {
+		return maximumBytes;
+	}
+	
+	public synchronized int size() {
+		return fragments.size();
+	}
+	
+	/**
+	 * @return the estimated size of the cached elements.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return the number of entries removed to make room.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * @return the number of entries found to have outlived their time to live.
+	 */
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+	
+	public synchronized void clear() {
+		fragments.clear();
+		bytes = 0;
+	}
+	
+	private void remove(final Object key, final Fragment fragment) {
+		fragments.remove(key);
+		bytes -= fragment.bytes;
+	}
+	
+	/**
+	 * @return the estimated size of a string, such as the source in a key.
+	 */
+	static long sizeOf(final String text) {
+		return NODE_OVERHEAD + 2L * text.length();
+	}
+	
+	static long sizeOf(final Node node) {
+		long size = NODE_OVERHEAD;
+		if(node instanceof Element) {
+			Element element = (Element) node;
+			size += 2L * element.getOriginalName().length();
+			Attribute[] attributes = element.unsafeGetAttributes();
+			for(int i=0; i<element.numAttributes(); i++) {
+				String value = attributes[i].getValue();
+				size += NODE_OVERHEAD + 2L * (attributes[i].getOriginalName().length() + (value==null ? 0 : value.length()));
+			}
+		} else if(node instanceof AbstractTextNode) {
+			size += 2L * ((AbstractTextNode)node).getContent().length();
+		} else if(node instanceof Comment) {
+			size += 2L * ((Comment)node).getContent().length();
+		} else if(node instanceof Macro) {
+			size += 2L * ((Macro)node).getContent().length();
+		}
+		
+		if(node instanceof NestableNode) {
+			for(Node child : ((NestableNode)node).getChildren()) {
+				size += sizeOf(child);
+			}
+		}
+		return size;
+	}
+	
+	private static final class Fragment {
+		final Element element;
+		final long bytes;
+		final long expires;
+		
+		Fragment(Element element, long bytes, long expires) {
+			this.element = element;
+			this.bytes = bytes;
+			this.expires = expires;
+		}
+		
+		boolean isExpired(final long now) {
+			return expires!=0L && now - expires >= 0L;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@link BeanMetricsListener} which aggregates counters and latency histograms, and exposes them over JMX.
+ * 
+ *     BeanMetrics metrics = new BeanMetrics();
+ *     metrics.register("myapp");
+ *     dialect.setMetricsListener(metrics);
+ * 
+ * Per class figures are kept by class name, so redeployed classes do not stay reachable from here.
+ * 
+ * @author adam
+ *
+ */
+public class BeanMetrics implements BeanMetricsListener, BeanMetricsMBean {
+	
+	public static final String DOMAIN = "com.connect_group.thymeleaf.bean";
+	
+	private static final int BUCKETS = 64;
+	
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder attributesWritten = new LongAdder();
+	private final LongAdder expressionEvaluations = new LongAdder();
+	private final LongAdder expressionNanos = new LongAdder();
+	private final LongAdder extractionNanos = new LongAdder();
+	private final LongAdder applicationNanos = new LongAdder();
+	private final AtomicLongArray expressionHistogram = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray processingHistogram = new AtomicLongArray(BUCKETS);
+	private final ConcurrentMap<String, LongAdder> cacheHits = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> cacheMisses = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> cacheEvictions = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, ClassMetrics> classes = new ConcurrentHashMap<String, ClassMetrics>();
+	
+	private MBeanServer server;
+	private ObjectName objectName;
+	
+	public boolean isEnabled() {
+		return true;
+	}
+
+	public void expressionEvaluated(long nanos) {
+		expressionEvaluations.increment();
+		expressionNanos.add(nanos);
+		record(expressionHistogram, nanos);
+	}
+
+	public void beanProcessed(Class<?> beanClass, long extractionNanos, long applicationNanos, int attributesWritten) {
+		long nanos = extractionNanos + applicationNanos;
+		
+		this.invocations.increment();
+		this.attributesWritten.add(attributesWritten);
+		this.extractionNanos.add(extractionNanos);
+		this.applicationNanos.add(applicationNanos);
+		record(processingHistogram, nanos);
+		
+		String name = beanClass==null ? "null" : beanClass.getName();
+		ClassMetrics metrics = classes.get(name);
+		if(metrics==null) {
+			ClassMetrics created = new ClassMetrics();
+			metrics = classes.putIfAbsent(name, created);
+			if(metrics==null) {
+				metrics = created;
+			}
+		}
+		metrics.invocations.increment();
+		metrics.nanos.add(nanos);
+		metrics.attributes.add(attributesWritten);
+	}
+
+	public void cacheAccessed(String cache, boolean hit) {
+		counter(hit ? cacheHits : cacheMisses, cache).increment();
+	}
+	
+	@Override
+	public void cacheEvicted(String cache) {
+		counter(cacheEvictions, cache).increment();
+	}
+	
+	/**
+	 * Register with the platform MBean server as com.connect_group.thymeleaf.bean:type=BeanMetrics,name=<i>name</i>.
+	 */
+	public ObjectName register(final String name) throws JMException {
+		return register(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DOMAIN + ":type=BeanMetrics,name=" + ObjectName.quote(name)));
+	}
+	
+	public synchronized ObjectName register(final MBeanServer server, final ObjectName name) throws JMException {
+		server.registerMBean(this, name);
+		this.server = server;
+		this.objectName = name;
+		return name;
+	}
+	
+	/**
+	 * Unregister from the server, and under the name, given when last registered.
+	 */
+	public synchronized void unregister() throws JMException {
+		if(objectName!=null) {
+			server.unregisterMBean(objectName);
+			server = null;
+			objectName = null;
+		}
+	}
+
+	public long getInvocations() {
+		return invocations.sum();
+	}
+
+	public long getAttributesWritten() {
+		return attributesWritten.sum();
+	}
+
+	public long getExpressionEvaluations() {
+		return expressionEvaluations.sum();
+	}
+
+	public long getTotalExpressionTimeNanos() {
+		return expressionNanos.sum();
+	}
+
+	public long getTotalExtractionTimeNanos() {
+		return extractionNanos.sum();
+	}
+
+	public long getTotalApplicationTimeNanos() {
+		return applicationNanos.sum();
+	}
+
+	public long getExpressionCacheHits() {
+		return counter(cacheHits, EXPRESSION_CACHE).sum();
+	}
+
+	public long getExpressionCacheMisses() {
+		return counter(cacheMisses, EXPRESSION_CACHE).sum();
+	}
+
+	public long getPlanCacheHits() {
+		return counter(cacheHits, PLAN_CACHE).sum();
+	}
+
+	public long getPlanCacheMisses() {
+		return counter(cacheMisses, PLAN_CACHE).sum();
+	}
+
+	public long getPlanCacheEvictions() {
+		return counter(cacheEvictions, PLAN_CACHE).sum();
+	}
+
+	public long getWriterCacheHits() {
+		return counter(cacheHits, WRITER_CACHE).sum();
+	}
+
+	public long getWriterCacheMisses() {
+		return counter(cacheMisses, WRITER_CACHE).sum();
+	}
+
+	public long getMemoCacheHits() {
+		return counter(cacheHits, MEMO_CACHE).sum();
+	}
+
+	public long getMemoCacheMisses() {
+		return counter(cacheMisses, MEMO_CACHE).sum();
+	}
+
+	public long getFragmentCacheHits() {
+		return counter(cacheHits, FRAGMENT_CACHE).sum();
+	}
+
+	public long getFragmentCacheMisses() {
+		return counter(cacheMisses, FRAGMENT_CACHE).sum();
+	}
+
+	public long getExecutionCacheHits() {
+		return counter(cacheHits, EXECUTION_CACHE).sum();
+	}
+
+	public long getExecutionCacheMisses() {
+		return counter(cacheMisses, EXECUTION_CACHE).sum();
+	}
+
+	public long[] getExpressionLatencyHistogram() {
+		return snapshot(expressionHistogram);
+	}
+
+	public long[] getProcessingLatencyHistogram() {
+		return snapshot(processingHistogram);
+	}
+	
+	public long getProcessingLatencyPercentileNanos(double percentile) {
+		long[] histogram = getProcessingLatencyHistogram();
+		long total = 0;
+		for(long count : histogram) {
+			total += count;
+		}
+		if(total==0) {
+			return 0;
+		}
+		
+		long target = (long)Math.ceil(total * Math.min(100D, Math.max(0D, percentile)) / 100D);
+		long seen = 0;
+		for(int i=0; i<histogram.length; i++) {
+			seen += histogram[i];
+			if(seen>=target && seen>0) {
+				return i>=62 ? Long.MAX_VALUE : (1L << (i+1)) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public String[] getBeanClasses() {
+		List<String> result = new ArrayList<String>();
+		for(Map.Entry<String, ClassMetrics> entry : classes.entrySet()) {
+			ClassMetrics metrics = entry.getValue();
+			result.add(entry.getKey() 
+					+ " invocations=" + metrics.invocations.sum() 
+					+ " nanos=" + metrics.nanos.sum() 
+					+ " attributes=" + metrics.attributes.sum());
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	public void reset() {
+		invocations.reset();
+		attributesWritten.reset();
+		expressionEvaluations.reset();
+		expressionNanos.reset();
+		extractionNanos.reset();
+		applicationNanos.reset();
+		for(int i=0; i<BUCKETS; i++) {
+			expressionHistogram.set(i, 0);
+			processingHistogram.set(i, 0);
+		}
+		cacheHits.clear();
+		cacheMisses.clear();
+		cacheEvictions.clear();
+		classes.clear();
+	}
+	
+	static int bucket(long nanos) {
+		return nanos<=0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+	
+	private static void record(final AtomicLongArray histogram, final long nanos) {
+		histogram.incrementAndGet(bucket(nanos));
+	}
+	
+	private static long[] snapshot(final AtomicLongArray histogram) {
+		long[] result = new long[histogram.length()];
+		for(int i=0; i<result.length; i++) {
+			result[i] = histogram.get(i);
+		}
+		return result;
+	}
+	
+	private static LongAdder counter(final ConcurrentMap<String, LongAdder> counters, final String name) {
+		LongAdder counter = counters.get(name);
+		if(counter==null) {
+			LongAdder created = new LongAdder();
+			counter = counters.putIfAbsent(name, created);
+			if(counter==null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+	
+	private static final class ClassMetrics {
+		final LongAdder invocations = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder attributes = new LongAdder();
+	}
+}
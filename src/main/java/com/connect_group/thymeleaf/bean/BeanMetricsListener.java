@@ -0,0 +1,82 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * Receives timings and counts from the bean processor.
+ * 
+ * Register a listener with {@link BeanDialect#setMetricsListener(BeanMetricsListener)}.
+ * Listeners are called on the rendering threads, so must be thread-safe and cheap.
+ * When {@link #isEnabled()} is false nothing is timed and no other method is called.
+ * 
+ * @see BeanMetrics
+ * @author adam
+ *
+ */
+public interface BeanMetricsListener {
+	
+	String EXPRESSION_CACHE = "expression";
+	String PLAN_CACHE = "plan";
+	String WRITER_CACHE = "writer";
+	String MEMO_CACHE = "memo";
+	String FRAGMENT_CACHE = "fragment";
+	String EXECUTION_CACHE = "execution";
+	
+	/**
+	 * Does nothing, and tells the processor not to bother measuring anything.
+	 */
+	BeanMetricsListener NONE = new BeanMetricsListener() {
+		public boolean isEnabled() { return false; }
+		public void expressionEvaluated(long nanos) { }
+		public void beanProcessed(Class<?> beanClass, long extractionNanos, long applicationNanos, int attributesWritten) { }
+		public void cacheAccessed(String cache, boolean hit) { }
+	};
+
+	boolean isEnabled();
+	
+	/**
+	 * @param nanos time taken to parse (or fetch from cache) and execute the bean:use expression.
+	 */
+	void expressionEvaluated(long nanos);
+	
+	/**
+	 * @param beanClass class of the evaluated bean, or null.
+	 * @param extractionNanos time spent reading the bean into a map of attributes.  
+	 *        Zero for beans written directly to the element (Maps, AttributeSources and generated writers),
+	 *        where the whole cost is reported as application.
+	 * @param applicationNanos time spent setting attributes and text on the element.
+	 * @param attributesWritten number of attributes set or removed, not counting text and utext.
+	 */
+	void beanProcessed(Class<?> beanClass, long extractionNanos, long applicationNanos, int attributesWritten);
+	
+	/**
+	 * @param cache one of {@link #EXPRESSION_CACHE}, {@link #PLAN_CACHE}, {@link #WRITER_CACHE}, {@link #MEMO_CACHE}, {@link #FRAGMENT_CACHE} or {@link #EXECUTION_CACHE}.
+	 */
+	void cacheAccessed(String cache, boolean hit);
+	
+	/**
+	 * An entry was dropped to keep a bounded cache within its size.
+	 * 
+	 * @param cache currently only {@link #PLAN_CACHE}.
+	 */
+	default void cacheEvicted(String cache) {
+	}
+	
+}
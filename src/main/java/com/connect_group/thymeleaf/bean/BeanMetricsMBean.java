@@ -0,0 +1,87 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * JMX view of {@link BeanMetrics}.
+ * 
+ * Histograms have 64 buckets; bucket i counts timings of at least 2^i and less than 2^(i+1) nanoseconds.
+ * 
+ * @author adam
+ *
+ */
+public interface BeanMetricsMBean {
+
+	long getInvocations();
+	
+	long getAttributesWritten();
+	
+	long getExpressionEvaluations();
+	
+	long getTotalExpressionTimeNanos();
+	
+	long getTotalExtractionTimeNanos();
+	
+	long getTotalApplicationTimeNanos();
+	
+	long getExpressionCacheHits();
+	
+	long getExpressionCacheMisses();
+	
+	long getPlanCacheHits();
+	
+	long getPlanCacheMisses();
+	
+	long getPlanCacheEvictions();
+	
+	long getWriterCacheHits();
+	
+	long getWriterCacheMisses();
+	
+	long getMemoCacheHits();
+	
+	long getMemoCacheMisses();
+	
+	long getFragmentCacheHits();
+	
+	long getFragmentCacheMisses();
+	
+	long getExecutionCacheHits();
+	
+	long getExecutionCacheMisses();
+	
+	long[] getExpressionLatencyHistogram();
+	
+	long[] getProcessingLatencyHistogram();
+	
+	/**
+	 * @param percentile between 0 and 100.
+	 * @return upper bound, in nanoseconds, of the histogram bucket containing the percentile.
+	 */
+	long getProcessingLatencyPercentileNanos(double percentile);
+	
+	/**
+	 * @return one line per bean class: name, invocations, total nanoseconds and attributes written.
+	 */
+	String[] getBeanClasses();
+	
+	void reset();
+	
+}
@@ -0,0 +1,118 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.beans.BeanInfo;
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The compiled attribute plan for a single bean class.
+ * 
+ * Introspection, name processing and the data map check happen once, here.
+ * Rendering a bean then only has to invoke the getters listed in the plan.
+ * 
+ * Plans are safe to share between threads; apart from the breaker state of each property, they are immutable.
+ * 
+ * @author adam
+ *
+ */
+final class BeanPlan {
+	
+	static final BeanPlan EMPTY = new BeanPlan(Object.class, new PropertyPlan[0]);
+	
+	final Class<?> beanClass;
+	final PropertyPlan[] properties;
+	final boolean immutable;
+	final boolean deferred;
+	
+	// Worked out on first use, and held here so that they go when the plan does.
+	volatile BeanWriter writer;
+	private final ConcurrentMap<AttributeFilter, BeanPlan> filtered = new ConcurrentHashMap<AttributeFilter, BeanPlan>(4);
+	
+	private BeanPlan(Class<?> beanClass, PropertyPlan[] properties) {
+		this.beanClass = beanClass;
+		this.properties = properties;
+		this.immutable = beanClass.isAnnotationPresent(ImmutableBean.class);
+		
+		boolean deferred = false;
+		for(PropertyPlan property : properties) {
+			deferred |= property.valueKind==PropertyPlan.ValueKind.DEFERRED;
+		}
+		this.deferred = deferred;
+	}
+	
+	/**
+	 * @return a plan for the same class with only the properties the filter accepts.
+	 */
+	BeanPlan filter(final AttributeFilter filter) {
+		BeanPlan plan = filtered.get(filter);
+		if(plan==null) {
+			plan = createFiltered(filter);
+			BeanPlan existing = filtered.putIfAbsent(filter, plan);
+			if(existing!=null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+	
+	private BeanPlan createFiltered(final AttributeFilter filter) {
+		List<PropertyPlan> accepted = new ArrayList<PropertyPlan>();
+		for(PropertyPlan property : properties) {
+			if(filter.accepts(property)) {
+				accepted.add(property);
+			}
+		}
+		return new BeanPlan(beanClass, accepted.toArray(new PropertyPlan[accepted.size()]));
+	}
+	
+	static BeanPlan create(final Class<?> beanClass) {
+		List<PropertyPlan> properties = new ArrayList<PropertyPlan>();
+		
+		try {
+			BeanInfo info = Introspector.getBeanInfo(beanClass);
+			PropertyDescriptor[] pds = info.getPropertyDescriptors();
+			
+			if(pds!=null) {
+				for(PropertyDescriptor pd : pds) {
+					String name = pd.getName();
+					Method method = pd.getReadMethod();
+					
+					// Ignore indexed methods, write-only properties and getClass().
+					if(!"class".equals(name) && !(pd instanceof IndexedPropertyDescriptor) && method!=null) {
+						properties.add(new PropertyPlan(name, method));
+					}
+				}
+			}
+		} catch (IntrospectionException e) {
+			return EMPTY;
+		}
+		
+		return new BeanPlan(beanClass, properties.toArray(new PropertyPlan[properties.size()]));
+	}
+}
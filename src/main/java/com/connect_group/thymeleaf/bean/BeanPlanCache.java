@@ -0,0 +1,201 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe store of {@link BeanPlan}s, one per bean class.
+ * 
+ * Plans are held in a {@link ClassValue}, so they belong to the class they describe and are collected with it;
+ * a redeployed web application's classes are not kept alive from here.  That is only done for classes of this
+ * library's own class loader, or of its children.  A value attached to a class of a parent or shared loader would 
+ * keep this library's loader, and so the whole web application, alive for as long as that class; plans of those 
+ * classes are kept in a map belonging to the cache instead, and go with it.
+ * 
+ * Generated proxy classes (CGLIB, Javassist, ByteBuddy and Hibernate proxies) share the plan of the class they proxy.
+ * 
+ * The number of classes is bounded; once the bound is reached the longest held plan is dropped for each new one.
+ * 
+ * @author adam
+ *
+ */
+final class BeanPlanCache {
+	
+	static final int DEFAULT_MAXIMUM_SIZE = 4096;
+	
+	private static final String[] PROXY_MARKERS = { "$$", "$HibernateProxy$", "$ByteBuddy$" };
+	
+	private final ClassValue<Entry> plans = new ClassValue<Entry>() {
+		@Override
+		protected Entry computeValue(Class<?> type) {
+			Class<?> userClass = getUserClass(type);
+			return new Entry(userClass==type ? BeanPlan.create(type) : BeanPlanCache.this.get(userClass));
+		}
+	};
+	private final ConcurrentMap<Class<?>, Entry> shared = new ConcurrentHashMap<Class<?>, Entry>();
+	private final ClassLoader loader = BeanPlanCache.class.getClassLoader();
+	private final ConcurrentLinkedQueue<WeakReference<Class<?>>> order = new ConcurrentLinkedQueue<WeakReference<Class<?>>>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final int maximumSize;
+	private final BeanMetricsListener metrics;
+	
+	BeanPlanCache() {
+		this(BeanMetricsListener.NONE);
+	}
+	
+	BeanPlanCache(BeanMetricsListener metrics) {
+		this(metrics, DEFAULT_MAXIMUM_SIZE);
+	}
+	
+	BeanPlanCache(BeanMetricsListener metrics, int maximumSize) {
+		if(maximumSize<1) {
+			throw new IllegalArgumentException("Maximum size must be at least 1");
+		}
+		this.metrics = metrics;
+		this.maximumSize = maximumSize;
+	}
+
+	BeanPlan get(final Class<?> beanClass) {
+		Entry entry = isOwned(beanClass) ? plans.get(beanClass) : getShared(beanClass);
+		boolean added = !entry.added && entry.add();
+		if(metrics.isEnabled()) {
+			metrics.cacheAccessed(BeanMetricsListener.PLAN_CACHE, !added);
+		}
+		
+		if(added) {
+			order.add(new WeakReference<Class<?>>(beanClass));
+			if(size.incrementAndGet()>maximumSize) {
+				evict();
+			}
+		}
+		return entry.plan;
+	}
+	
+	private Entry getShared(final Class<?> beanClass) {
+		Entry entry = shared.get(beanClass);
+		if(entry==null) {
+			Class<?> userClass = getUserClass(beanClass);
+			Entry created = new Entry(userClass==beanClass ? BeanPlan.create(beanClass) : get(userClass));
+			entry = shared.putIfAbsent(beanClass, created);
+			if(entry==null) {
+				entry = created;
+			}
+		}
+		return entry;
+	}
+	
+	/**
+	 * @return true if the class's loader is this library's loader, or one of its descendants.
+	 */
+	private boolean isOwned(final Class<?> beanClass) {
+		if(loader==null) {
+			// Loaded by the bootstrap loader, this library is never unloaded.
+			return true;
+		}
+		for(ClassLoader candidate = beanClass.getClassLoader(); candidate!=null; candidate = candidate.getParent()) {
+			if(candidate==loader) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return an upper bound on the number of classes held; classes which have been collected are counted until they reach the head of the queue.
+	 */
+	int size() {
+		return size.get();
+	}
+	
+	int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * @return the class which a generated proxy class stands in for, or the class itself.
+	 */
+	static Class<?> getUserClass(final Class<?> type) {
+		Class<?> userClass = type;
+		while(isGeneratedProxy(userClass) && userClass.getSuperclass()!=null && userClass.getSuperclass()!=Object.class) {
+			userClass = userClass.getSuperclass();
+		}
+		return userClass;
+	}
+	
+	private static boolean isGeneratedProxy(final Class<?> type) {
+		if(Proxy.isProxyClass(type)) {
+			// JDK proxies only have interfaces to offer; their own class is as good a key as any.
+			return false;
+		}
+		String name = type.getName();
+		for(String marker : PROXY_MARKERS) {
+			if(name.contains(marker)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void evict() {
+		while(size.get()>maximumSize) {
+			WeakReference<Class<?>> eldest = order.poll();
+			if(eldest==null) {
+				return;
+			}
+			size.decrementAndGet();
+			
+			Class<?> evicted = eldest.get();
+			if(evicted!=null) {
+				if(shared.remove(evicted)==null) {
+					plans.remove(evicted);
+				}
+				if(metrics.isEnabled()) {
+					metrics.cacheEvicted(BeanMetricsListener.PLAN_CACHE);
+				}
+			}
+		}
+	}
+	
+	private static final class Entry {
+		final BeanPlan plan;
+		volatile boolean added;
+		
+		Entry(BeanPlan plan) {
+			this.plan = plan;
+		}
+		
+		/**
+		 * @return true for the first caller only.
+		 */
+		synchronized boolean add() {
+			if(added) {
+				return false;
+			}
+			added = true;
+			return true;
+		}
+	}
+}
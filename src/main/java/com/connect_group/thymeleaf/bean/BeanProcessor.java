@@ -1,23 +1,20 @@
 package com.connect_group.thymeleaf.bean;
 
-import java.beans.BeanInfo;
-import java.beans.IndexedPropertyDescriptor;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.thymeleaf.Arguments;
+import org.thymeleaf.dom.Element;
 import org.thymeleaf.dom.Macro;
 import org.thymeleaf.dom.Node;
 import org.thymeleaf.dom.Text;
 import org.thymeleaf.processor.ProcessorResult;
-import org.thymeleaf.util.StringUtils;
 
 /**
  * The bean processor will react to a th:bean attribute.
@@ -70,305 +67,319 @@ import org.thymeleaf.util.StringUtils;
  *
  */
 public class BeanProcessor extends BaseAttributeProcessor {
+	
+	public static final String ATTRIBUTE_NAME = "use";
+	public static final int PRECEDENCE = 200;
 
+	private final BeanAttributeReader reader;
+	private final ConcurrentMap<String, AttributeFilter> filters = new ConcurrentHashMap<String, AttributeFilter>();
+	private final ProcessingMode mode;
+	private final BeanMetricsListener metrics;
+	private final boolean deduplicate;
+	private final LongAdder recomputationsSaved;
+	private final String executionAttributesProperty = BeanProcessor.class.getName() + ".attributes." + INSTANCES.incrementAndGet();
+	
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+	
 	public BeanProcessor() {
-		super("use");
+		this(ProcessingMode.REFLECTIVE);
 	}
 	
-
-	@Override
-	protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
-		Map<String,String> modifiedAttributes = getProperties(data.evaluatedAttributeValue);
-		ProcessorResult result = updateAttributes(data.element, modifiedAttributes);
-		
-		if(result.isOK()) {
-	    	List<Node> modifiedChildren = getModifiedChildren(modifiedAttributes);
-	    	
-	    	if(modifiedChildren!=null) {
-	    		data.element.clearChildren();
-	    		data.element.setChildren(modifiedChildren);
-	    	}
-
-		}
-		return result;
+	public BeanProcessor(ProcessingMode mode) {
+		this(mode, BeanAttributeBinders.NONE);
 	}
 	
-	private List<Node> getModifiedChildren(final Map<String, String> modifiedAttributes) {
-		if(modifiedAttributes.containsKey("text")) {
-			Node node = new Text(modifiedAttributes.get("text"));
-			node.setProcessable(false);
-			return Collections.singletonList(node);
-		}
-		
-		if(modifiedAttributes.containsKey("utext")) {
-			Node node = new Macro(modifiedAttributes.get("utext"));
-			node.setProcessable(false);
-			return Collections.singletonList(node);
+	public BeanProcessor(ProcessingMode mode, BeanAttributeBinders binders) {
+		this(mode, new BeanSettings(), binders, false, new LongAdder());
+	}
+	
+	/**
+	 * @param dialect the settings to use; they are read once, here.
+	 */
+	public BeanProcessor(BeanDialect dialect, BeanAttributeBinders binders) {
+		this(dialect.getProcessingMode(), dialect.getSettings(), binders, dialect.isDeduplicateBeans(), dialect.getRecomputationsSavedCounter());
+		setMergedAttributes(dialect.getMergedAttributes());
+	}
+	
+	private BeanProcessor(ProcessingMode mode, BeanSettings settings, BeanAttributeBinders binders, boolean deduplicate, LongAdder recomputationsSaved) {
+		super(ATTRIBUTE_NAME);
+		if(mode==null) {
+			throw new IllegalArgumentException("Processing mode cannot be null");
 		}
-		
-		return null;
+		this.mode = mode;
+		this.metrics = settings.getMetricsListener();
+		this.reader = settings.createReader(binders);
+		this.deduplicate = deduplicate;
+		this.recomputationsSaved = recomputationsSaved;
+	}
+	
+	public ProcessingMode getProcessingMode() {
+		return mode;
+	}
+	
+	@Override
+	protected BeanMetricsListener getMetricsListener() {
+		return metrics;
 	}
-
 
 	@Override
-	public int getPrecedence() {
-		return 200;
+	protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+		final Object bean = data.evaluatedAttributeValue;
+		final AttributeFilter filter = getFilter(data.element, data.attributeName, ATTRIBUTE_NAME);
+		process(bean, data.element, filter==null && mode==ProcessingMode.GENERATED ? getWriter(bean) : null, filter, getExecutionAttributes(arguments));
+		return ProcessorResult.OK;
 	}
 	
-	protected Map<String,String> getProperties(final Object obj) {
-		HashMap<String,String> map = new HashMap<String,String>();
-		
-		map.putAll(getMapProperties(obj));
+	/**
+	 * Read, and remove, the bean:only and bean:except attributes which accompany a processor's attribute.
+	 * 
+	 * @param attributeName the processor's attribute, as it appears on the element; e.g. bean:use
+	 * @param unprefixedName the processor's attribute without its prefix; e.g. use
+	 * @return the compiled filter, or null if there is neither.
+	 */
+	AttributeFilter getFilter(final Element element, final String attributeName, final String unprefixedName) {
+		if(!attributeName.endsWith(unprefixedName)) {
+			return null;
+		}
 		
-		try {
-			BeanInfo info = Introspector.getBeanInfo(obj.getClass());
-			PropertyDescriptor[] pds = info.getPropertyDescriptors();
-			
-			if(pds!=null) {
-				for(PropertyDescriptor pd : pds) {
-					String name = pd.getName();
-					
-					if(!"class".equals(name)) {
-						name = processName(name);
-						
-						String result = null;
-						if(pd instanceof IndexedPropertyDescriptor) {
-							// Ignore indexed methods.
-						} else {
-							if("data".equals(name) && isInstanceofMap(pd.getReadMethod().getReturnType())) {
-								map.putAll(extractDataAttributes(pd, obj));
-							} else {
-								result = getResult(pd, obj);
-							}
-						}
-						
-						if(!StringUtils.isEmpty(result)) {
-							map.put(name,result);
-						}
-					}
-				}
-			}
-		} catch (IntrospectionException e) {
+		final String prefix = attributeName.substring(0, attributeName.length() - unprefixedName.length());
+		final String only = element.getAttributeValue(prefix + "only");
+		final String except = element.getAttributeValue(prefix + "except");
+		if(only==null && except==null) {
+			return null;
 		}
+		element.removeAttribute(prefix + "only");
+		element.removeAttribute(prefix + "except");
 		
-		return map;
+		final String key = (only==null ? "-" : "+" + only) + '\n' + (except==null ? "-" : "+" + except);
+		AttributeFilter filter = filters.get(key);
+		if(filter==null) {
+			filter = AttributeFilter.compile(only, except);
+			filters.putIfAbsent(key, filter);
+		}
+		return filter;
 	}
 	
-	private Map<? extends String, ? extends String> extractDataAttributes(PropertyDescriptor pd, Object obj) {
-
-		HashMap<String,String> result = new HashMap<String,String>();
-		
-		try {
-			Map<?,?> map = (Map<?,?>)pd.getReadMethod().invoke(obj);
-			for(Entry<?,?> entry : map.entrySet()) {
-				if(entry.getKey() instanceof String) {
-					String name="data-" + (String)entry.getKey();
-					String value=asString(entry.getValue(), "true", "false");
-					result.put(name, value);
-				}
-			}
-		} catch (Exception e) {
-		
+	/**
+	 * The attributes already read during one template execution, by bean identity; see {@link BeanDialect#setDeduplicateBeans(boolean)}.
+	 * 
+	 * @return null if beans are not deduplicated.
+	 */
+	Map<Object, Map<String,String>> getExecutionAttributes(final Arguments arguments) {
+		if(!deduplicate) {
+			return null;
 		}
-		return result;
-	}
-
-
-	private boolean isInstanceofMap(Class<?> type) {
-		return Map.class.isAssignableFrom(type);
-	}
-
-
-	static String processName(final String name) {
-		String newName = name;
-		
-		if("cssClass".equals(name)) {
-			newName="class";
-		} else if(isDataAttribute(name)){
-			newName = uncamel(name);
+		@SuppressWarnings("unchecked")
+		Map<Object, Map<String,String>> attributes = (Map<Object, Map<String,String>>) getExecutionProperty(arguments, executionAttributesProperty);
+		if(attributes==null) {
+			// An execution runs on one thread, so its own map needs no locking.
+			attributes = new IdentityHashMap<Object, Map<String,String>>();
+			setExecutionProperty(arguments, executionAttributesProperty, attributes);
 		}
-		return newName;
+		return attributes;
 	}
-
-	static String uncamel(String name) {
-		StringBuilder uncamel = new StringBuilder();
+	
+	int process(final Object bean, final Element element, final BeanWriter writer, final AttributeFilter filter) {
+		return process(bean, element, writer, filter, null);
+	}
+	
+	/**
+	 * Apply the bean's attributes and body to the element.
+	 * 
+	 * @param writer the writer for the bean's class, or null to read the bean reflectively.
+	 * @param filter the attributes to apply, or null for all of them; a filtered bean is never written by a writer.
+	 * @param executionAttributes the attributes of beans already read in this template execution, or null.
+	 * @return the number of attributes written.
+	 */
+	int process(final Object bean, final Element element, final BeanWriter writer, final AttributeFilter filter, final Map<Object, Map<String,String>> executionAttributes) {
+		final boolean timed = metrics.isEnabled();
+		final long start = timed ? System.nanoTime() : 0L;
+		long extracted = start;
+		int written;
 		
-		for(int i=0; i<name.length(); i++) {
-			char c = name.charAt(i);
-			if(isUppercase(c)) {
-				uncamel.append("-");
+		if(executionAttributes!=null && filter==null && bean!=null && !(bean instanceof Map<?,?>)) {
+			Map<String,String> modifiedAttributes = executionAttributes.get(bean);
+			if(timed) {
+				metrics.cacheAccessed(BeanMetricsListener.EXECUTION_CACHE, modifiedAttributes!=null);
+			}
+			if(modifiedAttributes==null) {
+				modifiedAttributes = getProperties(bean);
+				executionAttributes.put(bean, modifiedAttributes);
+			} else {
+				recomputationsSaved.increment();
+			}
+			if(timed) {
+				extracted = System.nanoTime();
 			}
-			uncamel.append(c);
+			written = apply(modifiedAttributes, element);
+		} else if(bean instanceof Map<?,?> || bean instanceof AttributeSource || (filter==null && reader.isMemoized(bean))) {
+			written = stream(bean, element, filter);
+		} else if(writer!=null && filter==null) {
+			written = write(writer, bean, element);
+		} else {
+			Map<String,String> modifiedAttributes = filter==null ? getProperties(bean) : reader.getProperties(bean, filter);
+			if(timed) {
+				extracted = System.nanoTime();
+			}
+			written = apply(modifiedAttributes, element);
 		}
 		
-		return uncamel.toString().toLowerCase();
-	}
-
-
-	static boolean isDataAttribute(String name) {
-		return (name.length()>4 && name.startsWith("data") && isUppercase(name.charAt(4)));
+		if(timed) {
+			metrics.beanProcessed(bean==null ? null : bean.getClass(), extracted - start, System.nanoTime() - extracted, written);
+		}
+		return written;
 	}
 	
-	static boolean isUppercase(char c) {
-		return (c>='A' && c<='Z');
-	}
-
-	private Map<String,String> getMapProperties(final Object obj) {
-		if(obj instanceof Map<?,?>) {
-			return getMapProperties((Map<?,?>)obj);
-		}
-		return Collections.emptyMap();
+	private int apply(final Map<String,String> modifiedAttributes, final Element element) {
+		updateAttributes(element, modifiedAttributes);
+		
+    	List<Node> modifiedChildren = getModifiedChildren(modifiedAttributes);
+    	if(modifiedChildren!=null) {
+    		element.clearChildren();
+    		element.setChildren(modifiedChildren);
+    	}
+    	
+    	int written = modifiedAttributes.size();
+    	if(modifiedAttributes.containsKey("text")) written--;
+    	if(modifiedAttributes.containsKey("utext")) written--;
+    	return written;
 	}
 	
-	private Map<String,String> getMapProperties(final Map<?,?> map) {
-		HashMap<String,String> result = new HashMap<String,String>();
+	private int write(final BeanWriter writer, final Object bean, final Element element) {
+		int written = writer.writeAttributes(bean, element, this);
 		
-		for(Entry<?,?> entry : map.entrySet()) {
-			if(entry.getKey() instanceof String) {
-				String name = (String) entry.getKey();
-				String value = asString(entry.getValue(),name,null);
-				
-				if(value!=null) {
-					result.put(name, value);
-				}
-			}
+		// As with a map of attributes, text wins over utext; utext is only read when there is no text.
+		final String text = writer.getText(bean);
+		List<Node> modifiedChildren = getModifiedChildren(text, text==null ? writer.getUtext(bean) : null);
+		if(modifiedChildren!=null) {
+			element.clearChildren();
+			element.setChildren(modifiedChildren);
 		}
-		
-		return result;
+		return written;
 	}
-
-	private String getResult(final PropertyDescriptor pd, final Object obj) {
-		String name = pd.getName();
-		Method method = pd.getReadMethod();
-		if(method!=null) {
-			try {
-				return asString(method.invoke(obj), name, null);
-			} catch (Exception e) {}
+	
+	/**
+	 * Maps, AttributeSources and memoized beans are applied entry by entry, without introspection or copying.
+	 */
+	private int stream(final Object source, final Element element, final AttributeFilter filter) {
+		ElementVisitor visitor = new ElementVisitor(element);
+		reader.read(source, filter, visitor);
+		
+		List<Node> modifiedChildren = getModifiedChildren(visitor.text, visitor.utext);
+		if(modifiedChildren!=null) {
+			element.clearChildren();
+			element.setChildren(modifiedChildren);
 		}
-		return null;
+		return visitor.written;
 	}
-
-	private String asString(final Object obj, final String booleanTrueResult, final String booleanFalseResult) {
-		if(obj==null) {
-			return null;
-		}
+	
+	private final class ElementVisitor implements AttributeSource.Visitor {
+		private final Element element;
+		String text;
+		String utext;
+		int written;
 		
-		if(obj instanceof String) {
-			return (String)obj;
+		ElementVisitor(Element element) {
+			this.element = element;
 		}
-		
-		if(obj instanceof Boolean) {
-			if(((Boolean)obj).booleanValue()) {
-				return booleanTrueResult;
+
+		public void attribute(String name, String value) {
+			if("text".equals(name)) {
+				text = value;
+			} else if("utext".equals(name)) {
+				utext = value;
 			} else {
-				return booleanFalseResult;
+				updateAttribute(element, name, value);
+				written++;
 			}
 		}
-		
-		if(obj instanceof Object[]) {
-			return asString((Object[])obj);
-		} else if(obj instanceof byte[]) {
-			return asString((byte[])obj);
-		} else if(obj instanceof short[]) {
-			return asString((short[])obj);
-		} else if(obj instanceof int[]) {
-			return asString((int[])obj);
-		} else if(obj instanceof long[]) {
-			return asString((long[])obj);
-		} else if(obj instanceof float[]) {
-			return asString((float[])obj);
-		} else if(obj instanceof double[]) {
-			return asString((double[])obj);
-		} else if(obj instanceof char[]) {
-			return asString((char[])obj);
+	}
+	
+	/**
+	 * Introspect a bean class now rather than when it is first used; see {@link BeanWarmUp}.
+	 */
+	void prepare(final Class<?> beanClass) {
+		if(reader.getBinder(beanClass)!=null) {
+			return;
 		}
-		
-		if(obj instanceof Iterable) {
-			return asString((Iterable<?>)obj);
+		BeanPlan plan = reader.getPlan(beanClass);
+		if(mode==ProcessingMode.GENERATED) {
+			getWriter(plan);
+		}
+	}
+	
+	/**
+	 * @return the writer for the bean's class, or null if the bean must be processed reflectively.
+	 */
+	BeanWriter getWriter(final Object bean) {
+		if(bean==null || bean instanceof Map<?,?> || reader.getBinder(bean.getClass())!=null) {
+			// A compiled binder beats a writer; let getProperties use it.
+			return null;
 		}
 		
-		return obj.toString();
+		return getWriter(reader.getPlan(bean.getClass()));
 	}
 	
-	private String asString(final Iterable<?> it) {
-		StringBuilder str = new StringBuilder();
+	private BeanWriter getWriter(final BeanPlan plan) {
+		BeanWriter writer = plan.writer;
+		if(metrics.isEnabled()) {
+			metrics.cacheAccessed(BeanMetricsListener.WRITER_CACHE, writer!=null);
+		}
 		
-		for(Object o : it) {
-			append(str, asString(o, "true", "false"));
+		if(writer==null) {
+			// Two threads may both build a writer; either will do.  NONE remembers that the class cannot have one.
+			writer = BeanWriter.create(plan, reader.getFailurePolicy(), reader.getProfiler());
+			plan.writer = writer==null ? BeanWriter.NONE : writer;
 		}
-		return str.toString();
+		return writer==BeanWriter.NONE ? null : writer;
 	}
-
-	private String asString(final Object[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(Object o : arr) {
-			append(str, asString(o, "true", "false"));
-		}
-		return str.toString();
+	
+	private List<Node> getModifiedChildren(final Map<String, String> modifiedAttributes) {
+		return getModifiedChildren(modifiedAttributes.get("text"), modifiedAttributes.get("utext"));
 	}
 	
-	private String asString(final byte[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(byte b : arr) {
-			append(str,b);
+	private List<Node> getModifiedChildren(final String text, final String utext) {
+		if(text!=null) {
+			Node node = new Text(text);
+			node.setProcessable(false);
+			return Collections.singletonList(node);
 		}
-		return str.toString();		
+		
+		if(utext!=null) {
+			Node node = new Macro(utext);
+			node.setProcessable(false);
+			return Collections.singletonList(node);
+		}
+		
+		return null;
 	}
 
-	private String asString(final short[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(short s : arr) {
-			append(str,s);
-		}
-		return str.toString();		
+
+	@Override
+	public int getPrecedence() {
+		return PRECEDENCE;
 	}
 	
-	private String asString(final int[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(int i : arr) {
-			append(str, i);
-		}
-		return str.toString();		
+	protected Map<String,String> getProperties(final Object obj) {
+		return reader.getProperties(obj);
 	}
-
-	private String asString(final long[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(long l : arr) {
-			append(str,l);
-		}
-		return str.toString();		
+	
+	static String processName(final String name) {
+		return AttributeNames.processName(name);
 	}
 
-	private String asString(final float[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(float f : arr) {
-			append(str,f);
-		}
-		return str.toString();		
+	static String uncamel(String name) {
+		return AttributeNames.uncamel(name);
 	}
 
-	private String asString(final double[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(double d : arr) {
-			append(str,d);
-		}
-		return str.toString();		
-	}
-	
-	private String asString(final char[] arr) {
-		StringBuilder str = new StringBuilder();
-		for(char c : arr) {
-			append(str,c);
-		}
-		return str.toString();		
+	static boolean isDataAttribute(String name) {
+		return AttributeNames.isDataAttribute(name);
 	}
 	
-	private void append(final StringBuilder str, final Object val) {
-		if(str.length()!=0) str.append(" ");
-		str.append(val);
+	static boolean isUppercase(char c) {
+		return AttributeNames.isUppercase(c);
 	}
 
-
 	@Override
 	protected boolean isIgnoredAttribute(String modifiedAttributeName) {
 		return "text".equals(modifiedAttributeName) || "utext".equals(modifiedAttributeName);
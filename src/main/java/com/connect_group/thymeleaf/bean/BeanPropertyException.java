@@ -0,0 +1,49 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * Thrown, in strict mode, when a bean's getter fails.
+ * 
+ * @see GetterFailurePolicy
+ * @author adam
+ *
+ */
+public class BeanPropertyException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final Class<?> beanClass;
+	private final String propertyName;
+
+	public BeanPropertyException(Class<?> beanClass, String propertyName, Throwable cause) {
+		super("Could not read property '" + propertyName + "' of " + beanClass.getName(), cause);
+		this.beanClass = beanClass;
+		this.propertyName = propertyName;
+	}
+
+	public Class<?> getBeanClass() {
+		return beanClass;
+	}
+
+	public String getPropertyName() {
+		return propertyName;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * The settings shared by the bean dialects for Thymeleaf 2.1 and 3, and by any {@link BeanAttributeReader} created from them.
+ * 
+ * They are read when the template engine is initialised, or when {@link #createReader} is called; later changes are not seen.
+ * 
+ * @author adam
+ *
+ */
+public class BeanSettings {
+	
+	private BeanMetricsListener metricsListener = BeanMetricsListener.NONE;
+	private BeanAttributeMemo attributeMemo;
+	private PropertyPrefetcher prefetcher = PropertyPrefetcher.INLINE;
+	private GetterFailurePolicy failurePolicy = new GetterFailurePolicy();
+	private int maximumPlanCacheSize = BeanPlanCache.DEFAULT_MAXIMUM_SIZE;
+	private BeanWarmUp warmUp;
+	private GetterProfiler getterProfiler;
+	
+	public BeanMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * Receive timings and counts for every bean:use; see {@link BeanMetrics} for a JMX implementation.
+	 */
+	public void setMetricsListener(BeanMetricsListener metricsListener) {
+		this.metricsListener = metricsListener==null ? BeanMetricsListener.NONE : metricsListener;
+	}
+	
+	public BeanAttributeMemo getAttributeMemo() {
+		return attributeMemo;
+	}
+
+	/**
+	 * Remember the attributes of {@link ImmutableBean}s and {@link VersionedBean}s; null, the default, turns this off.
+	 */
+	public void setAttributeMemo(BeanAttributeMemo attributeMemo) {
+		this.attributeMemo = attributeMemo;
+	}
+	
+	public PropertyPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+
+	/**
+	 * Choose the executor and timeout for properties which return a Supplier or Future.
+	 */
+	public void setPrefetcher(PropertyPrefetcher prefetcher) {
+		this.prefetcher = prefetcher==null ? PropertyPrefetcher.INLINE : prefetcher;
+	}
+	
+	public GetterFailurePolicy getFailurePolicy() {
+		return failurePolicy;
+	}
+
+	/**
+	 * Count, break on, or throw getter failures; by default they are counted and the property is left out.
+	 */
+	public void setFailurePolicy(GetterFailurePolicy failurePolicy) {
+		if(failurePolicy==null) {
+			throw new IllegalArgumentException("Failure policy cannot be null");
+		}
+		this.failurePolicy = failurePolicy;
+	}
+	
+	public int getMaximumPlanCacheSize() {
+		return maximumPlanCacheSize;
+	}
+
+	/**
+	 * The number of bean classes whose introspected plans are kept at once; 4096 by default.
+	 */
+	public void setMaximumPlanCacheSize(int maximumPlanCacheSize) {
+		if(maximumPlanCacheSize<1) {
+			throw new IllegalArgumentException("Maximum plan cache size must be at least 1");
+		}
+		this.maximumPlanCacheSize = maximumPlanCacheSize;
+	}
+	
+	public BeanWarmUp getWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * Classes and packages to introspect when the template engine is initialised; null, the default, introspects each class on first use.
+	 */
+	public void setWarmUp(BeanWarmUp warmUp) {
+		this.warmUp = warmUp;
+	}
+	
+	public GetterProfiler getGetterProfiler() {
+		return getterProfiler;
+	}
+
+	/**
+	 * Time a sample of getter calls to find slow properties; null, the default, times nothing.
+	 */
+	public void setGetterProfiler(GetterProfiler getterProfiler) {
+		this.getterProfiler = getterProfiler;
+	}
+	
+	/**
+	 * @return a reader with these settings, which does not see later changes to them.
+	 */
+	public BeanAttributeReader createReader(BeanAttributeBinders binders) {
+		return new BeanAttributeReader(binders, this);
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Introspects bean classes before the first template is rendered, rather than on first use.
+ * 
+ *     dialect.setWarmUp(new BeanWarmUp().addClasses(LinkBean.class).addPackages("com.example.model"));
+ * 
+ * The dialect prepares the classes when the template engine is initialised, in parallel on a fork-join pool.
+ * Packages are scanned, with their sub-packages, in directories and jars on the class path; interfaces, enums,
+ * annotations, abstract, anonymous and local classes are passed over, and classes are loaded without being initialised.
+ * 
+ * Afterwards getClassesPrepared(), getClassesFailed() and getElapsedNanos() report how the last warm-up went.
+ * 
+ * @author adam
+ *
+ */
+public class BeanWarmUp {
+	
+	private static final String CLASS_SUFFIX = ".class";
+	
+	private final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+	private final Set<String> packages = new LinkedHashSet<String>();
+	private final ForkJoinPool pool;
+	
+	private volatile int classesPrepared;
+	private volatile int classesFailed;
+	private volatile long elapsedNanos;
+	
+	public BeanWarmUp() {
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public BeanWarmUp(ForkJoinPool pool) {
+		if(pool==null) {
+			throw new IllegalArgumentException("Pool cannot be null");
+		}
+		this.pool = pool;
+	}
+	
+	public BeanWarmUp addClasses(Class<?>... beanClasses) {
+		classes.addAll(Arrays.asList(beanClasses));
+		return this;
+	}
+	
+	/**
+	 * @param packageNames e.g. com.example.model; sub-packages are included.
+	 */
+	public BeanWarmUp addPackages(String... packageNames) {
+		packages.addAll(Arrays.asList(packageNames));
+		return this;
+	}
+	
+	/**
+	 * Build the plan of each class in the reader, and wait for them all.  Classes with a binder are left alone.
+	 * 
+	 * @param classLoader the loader to scan packages with.
+	 * @return the number of classes prepared.
+	 */
+	public int prepare(final BeanAttributeReader reader, final ClassLoader classLoader) {
+		return prepare(new Preparer() {
+			public void prepare(Class<?> beanClass) {
+				reader.prepare(beanClass);
+			}
+		}, classLoader);
+	}
+	
+	int prepare(final Preparer preparer, final ClassLoader classLoader) {
+		final long start = System.nanoTime();
+		final Set<String> classNames = new LinkedHashSet<String>();
+		int failed = 0;
+		for(String packageName : packages) {
+			try {
+				scan(packageName, classLoader, classNames);
+			} catch (IOException e) {
+				failed++;
+			}
+		}
+		
+		final List<ForkJoinTask<Boolean>> tasks = new ArrayList<ForkJoinTask<Boolean>>();
+		for(final Class<?> beanClass : classes) {
+			tasks.add(pool.submit(new PrepareTask(preparer, beanClass, null, null)));
+		}
+		for(final String className : classNames) {
+			tasks.add(pool.submit(new PrepareTask(preparer, null, className, classLoader)));
+		}
+		
+		int prepared = 0;
+		for(ForkJoinTask<Boolean> task : tasks) {
+			Boolean result = task.join();
+			if(result==null) {
+				continue;
+			}
+			if(result.booleanValue()) {
+				prepared++;
+			} else {
+				failed++;
+			}
+		}
+		
+		classesPrepared = prepared;
+		classesFailed = failed;
+		elapsedNanos = System.nanoTime() - start;
+		return prepared;
+	}
+	
+	/**
+	 * @return the number of classes whose plans were built by the last warm-up.
+	 */
+	public int getClassesPrepared() {
+		return classesPrepared;
+	}
+
+	/**
+	 * @return the number of classes, or packages, which could not be loaded or introspected by the last warm-up.
+	 */
+	public int getClassesFailed() {
+		return classesFailed;
+	}
+	
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "Prepared " + classesPrepared + " bean classes in " + (elapsedNanos / 1000000L) + "ms"
+				+ (classesFailed>0 ? ", " + classesFailed + " failed" : "");
+	}
+	
+	static boolean isBeanClass(final Class<?> type) {
+		int modifiers = type.getModifiers();
+		return !type.isInterface() && !type.isAnnotation() && !type.isEnum() && !type.isPrimitive() && !type.isArray()
+				&& !type.isAnonymousClass() && !type.isLocalClass() && !type.isSynthetic()
+				&& !Modifier.isAbstract(modifiers);
+	}
+	
+	static void scan(final String packageName, final ClassLoader classLoader, final Set<String> classNames) throws IOException {
+		final String path = packageName.replace('.', '/');
+		final Enumeration<URL> resources = classLoader.getResources(path);
+		while(resources.hasMoreElements()) {
+			URL url = resources.nextElement();
+			if("file".equals(url.getProtocol())) {
+				scanDirectory(toFile(url), packageName, classNames);
+			} else {
+				URLConnection connection = url.openConnection();
+				if(connection instanceof JarURLConnection) {
+					connection.setUseCaches(false);
+					scanJar(((JarURLConnection)connection).getJarFile(), path + '/', classNames);
+				}
+			}
+		}
+	}
+	
+	private static File toFile(final URL url) throws IOException {
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return new File(URLDecoder.decode(url.getPath(), "UTF-8"));
+		}
+	}
+	
+	private static void scanDirectory(final File directory, final String packageName, final Set<String> classNames) {
+		File[] files = directory.listFiles();
+		if(files==null) {
+			return;
+		}
+		for(File file : files) {
+			String name = file.getName();
+			if(file.isDirectory()) {
+				scanDirectory(file, packageName + '.' + name, classNames);
+			} else if(isClassFile(name)) {
+				classNames.add(packageName + '.' + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+			}
+		}
+	}
+	
+	private static void scanJar(final JarFile jar, final String prefix, final Set<String> classNames) throws IOException {
+		try {
+			Enumeration<JarEntry> entries = jar.entries();
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if(name.startsWith(prefix) && isClassFile(name.substring(name.lastIndexOf('/') + 1))) {
+					classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+				}
+			}
+		} finally {
+			jar.close();
+		}
+	}
+	
+	private static boolean isClassFile(final String fileName) {
+		return fileName.endsWith(CLASS_SUFFIX) && !fileName.equals("package-info.class") && !fileName.equals("module-info.class");
+	}
+	
+	interface Preparer {
+		void prepare(Class<?> beanClass);
+	}
+	
+	/**
+	 * Loads, if need be, and prepares one class.  Yields null for a scanned class which is not a bean.
+	 */
+	private static final class PrepareTask implements Callable<Boolean> {
+		private final Preparer preparer;
+		private final Class<?> beanClass;
+		private final String className;
+		private final ClassLoader classLoader;
+		
+		PrepareTask(Preparer preparer, Class<?> beanClass, String className, ClassLoader classLoader) {
+			this.preparer = preparer;
+			this.beanClass = beanClass;
+			this.className = className;
+			this.classLoader = classLoader;
+		}
+
+		public Boolean call() {
+			try {
+				Class<?> type = beanClass!=null ? beanClass : Class.forName(className, false, classLoader);
+				if(beanClass==null && !isBeanClass(type)) {
+					return null;
+				}
+				preparer.prepare(type);
+				return Boolean.TRUE;
+			} catch (Exception e) {
+				return Boolean.FALSE;
+			} catch (LinkageError e) {
+				return Boolean.FALSE;
+			}
+		}
+	}
+}
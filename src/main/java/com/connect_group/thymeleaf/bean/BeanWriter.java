@@ -0,0 +1,260 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.thymeleaf.dom.Element;
+
+/**
+ * Writes the properties of one bean class straight onto an element.
+ * 
+ * Each property in the {@link BeanPlan} becomes a writer specialised for its value kind,
+ * so writing a bean is a single pass over the getters with no map of attribute values in between.
+ * The result is identical to applying {@link BeanProcessor#getProperties(Object)} to the element.
+ * 
+ * @author adam
+ *
+ */
+final class BeanWriter {
+	
+	static final BeanWriter NONE = new BeanWriter(new PropertyWriter[0], null, null, null, null);
+	
+	private final PropertyWriter[] attributes;
+	private final PropertyPlan text;
+	private final PropertyPlan utext;
+	private final GetterFailurePolicy policy;
+	private final GetterProfiler profiler;
+	
+	private BeanWriter(PropertyWriter[] attributes, PropertyPlan text, PropertyPlan utext, GetterFailurePolicy policy, GetterProfiler profiler) {
+		this.attributes = attributes;
+		this.text = text;
+		this.utext = utext;
+		this.policy = policy;
+		this.profiler = profiler;
+	}
+	
+	static BeanWriter create(final BeanPlan plan) {
+		return create(plan, new GetterFailurePolicy());
+	}
+	
+	/**
+	 * @return a writer for the plan, or null if any of its getters could not be bound to a generated accessor
+	 * or any property has to be prefetched.
+	 */
+	static BeanWriter create(final BeanPlan plan, final GetterFailurePolicy policy) {
+		return create(plan, policy, null);
+	}
+	
+	/**
+	 * @param profiler times a sample of getter calls, or null.
+	 */
+	static BeanWriter create(final BeanPlan plan, final GetterFailurePolicy policy, final GetterProfiler profiler) {
+		if(plan.deferred) {
+			return null;
+		}
+		
+		List<PropertyWriter> attributes = new ArrayList<PropertyWriter>();
+		PropertyPlan text = null;
+		PropertyPlan utext = null;
+		
+		for(PropertyPlan property : plan.properties) {
+			if(!PropertyAccessors.isGenerated(property.accessor)) {
+				return null;
+			}
+			
+			if(property.dataMap) {
+				attributes.add(new DataMapWriter(property));
+			} else if("text".equals(property.attributeName)) {
+				text = property;
+			} else if("utext".equals(property.attributeName)) {
+				utext = property;
+			} else if(property.constant) {
+				attributes.add(new ConstantWriter(property));
+			} else if(property.valueKind==PropertyPlan.ValueKind.STRING) {
+				attributes.add(new StringWriter(property));
+			} else if(property.valueKind==PropertyPlan.ValueKind.BOOLEAN) {
+				attributes.add(new BooleanWriter(property));
+			} else {
+				attributes.add(new ObjectWriter(property));
+			}
+		}
+		
+		return new BeanWriter(attributes.toArray(new PropertyWriter[attributes.size()]), text, utext, policy, profiler);
+	}
+	
+	/**
+	 * Every attribute goes through the processor's updateAttribute, so its ignored, remove-if-empty
+	 * and merged attribute rules apply just as they do to reflectively read beans.
+	 * 
+	 * @return the number of attributes set or removed.
+	 */
+	int writeAttributes(final Object bean, final Element element, final BaseAttributeProcessor processor) {
+		int written = 0;
+		for(PropertyWriter attribute : attributes) {
+			if(policy.isOpen(attribute.property)) {
+				continue;
+			}
+			try {
+				written += attribute.write(bean, element, processor, profiler);
+				policy.succeeded(attribute.property);
+			} catch (Exception e) {
+				policy.failed(attribute.property, bean.getClass(), e);
+			}
+		}
+		return written;
+	}
+	
+	String getText(final Object bean) {
+		return read(text, bean);
+	}
+	
+	String getUtext(final Object bean) {
+		return read(utext, bean);
+	}
+	
+	private String read(final PropertyPlan property, final Object bean) {
+		if(property!=null && property.isFolded()) {
+			String value = property.getConstantValue();
+			return AttributeNames.isEmpty(value) ? null : value;
+		}
+		if(property!=null && !policy.isOpen(property)) {
+			try {
+				String value = AttributeValues.asString(GetterProfiler.get(profiler, property, bean), property.booleanTrueResult, null);
+				policy.succeeded(property);
+				if(property.constant) {
+					property.fold(value);
+				}
+				if(!AttributeNames.isEmpty(value)) {
+					return value;
+				}
+			} catch (Exception e) {
+				policy.failed(property, bean.getClass(), e);
+			}
+		}
+		return null;
+	}
+	
+	private static abstract class PropertyWriter {
+		protected final PropertyPlan property;
+		
+		PropertyWriter(PropertyPlan property) {
+			this.property = property;
+		}
+		
+		/**
+		 * @return the number of attributes set or removed.
+		 */
+		abstract int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception;
+	}
+	
+	private static final class StringWriter extends PropertyWriter {
+		StringWriter(PropertyPlan property) {
+			super(property);
+		}
+
+		int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception {
+			String value = (String)GetterProfiler.get(profiler, property, bean);
+			if(!AttributeNames.isEmpty(value)) {
+				processor.updateAttribute(element, property.attributeName, value);
+				return 1;
+			}
+			return 0;
+		}
+	}
+	
+	private static final class BooleanWriter extends PropertyWriter {
+		BooleanWriter(PropertyPlan property) {
+			super(property);
+		}
+
+		int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception {
+			Boolean value = (Boolean)GetterProfiler.get(profiler, property, bean);
+			if(value!=null && value.booleanValue()) {
+				processor.updateAttribute(element, property.attributeName, property.booleanTrueResult);
+				return 1;
+			}
+			return 0;
+		}
+	}
+	
+	private static final class ObjectWriter extends PropertyWriter {
+		ObjectWriter(PropertyPlan property) {
+			super(property);
+		}
+
+		int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception {
+			String value = AttributeValues.asString(GetterProfiler.get(profiler, property, bean), property.booleanTrueResult, null);
+			if(!AttributeNames.isEmpty(value)) {
+				processor.updateAttribute(element, property.attributeName, value);
+				return 1;
+			}
+			return 0;
+		}
+	}
+	
+	private static final class ConstantWriter extends PropertyWriter {
+		ConstantWriter(PropertyPlan property) {
+			super(property);
+		}
+
+		int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception {
+			String value;
+			if(property.isFolded()) {
+				value = property.getConstantValue();
+			} else {
+				value = AttributeValues.asString(GetterProfiler.get(profiler, property, bean), property.booleanTrueResult, null);
+				property.fold(value);
+			}
+			if(!AttributeNames.isEmpty(value)) {
+				processor.updateAttribute(element, property.attributeName, value);
+				return 1;
+			}
+			return 0;
+		}
+	}
+	
+	private static final class DataMapWriter extends PropertyWriter {
+		DataMapWriter(PropertyPlan property) {
+			super(property);
+		}
+
+		int write(Object bean, Element element, BaseAttributeProcessor processor, GetterProfiler profiler) throws Exception {
+			Map<?,?> map = (Map<?,?>)GetterProfiler.get(profiler, property, bean);
+			if(map==null) {
+				return 0;
+			}
+			int written = 0;
+			for(Entry<?,?> entry : map.entrySet()) {
+				if(entry.getKey() instanceof String) {
+					String name = AttributeNames.dataAttributeName((String)entry.getKey());
+					String value = AttributeValues.asString(entry.getValue(), "true", "false");
+					
+					processor.updateAttribute(element, name, value);
+					written++;
+				}
+			}
+			return written;
+		}
+	}
+}
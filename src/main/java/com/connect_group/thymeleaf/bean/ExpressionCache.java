@@ -0,0 +1,79 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.standard.expression.IStandardExpression;
+
+/**
+ * Parsed expressions by expression text, for a single processor.
+ * 
+ * The cache is bounded; once it is full, further expressions are simply not cached.
+ * Expressions which need preprocessing (__...__) depend on the context and are never cached.
+ * 
+ * @author adam
+ *
+ */
+final class ExpressionCache {
+	
+	static final int DEFAULT_MAX_SIZE = 1000;
+	
+	private final ConcurrentMap<String, IStandardExpression> expressions = new ConcurrentHashMap<String, IStandardExpression>();
+	private final int maxSize;
+	private volatile Configuration configuration;
+	
+	ExpressionCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+	
+	ExpressionCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	IStandardExpression get(final Configuration configuration, final String expression) {
+		if(configuration!=this.configuration) {
+			// Parsed expressions belong to one engine's configuration.
+			return null;
+		}
+		return expressions.get(expression);
+	}
+	
+	void put(final Configuration configuration, final String expression, final IStandardExpression parsed) {
+		if(configuration!=this.configuration) {
+			expressions.clear();
+			this.configuration = configuration;
+		}
+		
+		if(isCacheable(expression) && expressions.size()<maxSize) {
+			expressions.putIfAbsent(expression, parsed);
+		}
+	}
+	
+	int size() {
+		return expressions.size();
+	}
+	
+	static boolean isCacheable(final String expression) {
+		return expression!=null && expression.indexOf("__")<0;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What to do when a bean's getter throws.
+ * 
+ * By default a failing property is left out of the element, as it always has been, but each failure is counted
+ * by bean class and property so that it can be seen.
+ * 
+ * With a failure threshold the policy also acts as a circuit breaker: after that many failures in a row a getter is
+ * not called at all for the open period, and its property is left out.  The first call after the period decides 
+ * whether the getter stays closed or is opened again.
+ * 
+ * In strict mode the first failure is thrown, as a {@link BeanPropertyException}.
+ * 
+ *     dialect.setFailurePolicy(new GetterFailurePolicy(false, 5, 30, TimeUnit.SECONDS));
+ * 
+ * @author adam
+ *
+ */
+public final class GetterFailurePolicy {
+	
+	private final boolean strict;
+	private final int failureThreshold;
+	private final long openNanos;
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final ConcurrentMap<String, LongAdder> failuresByProperty = new ConcurrentHashMap<String, LongAdder>();
+	
+	/**
+	 * Leave failing properties out, and count them.
+	 */
+	public GetterFailurePolicy() {
+		this(false, 0, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @param strict throw the first failure.
+	 * @param failureThreshold failures in a row before a getter is no longer called, or 0 never to stop calling it.
+	 * @param openFor how long to stop calling a getter for.
+	 */
+	public GetterFailurePolicy(final boolean strict, final int failureThreshold, final long openFor, final TimeUnit unit) {
+		if(failureThreshold<0 || openFor<0) {
+			throw new IllegalArgumentException("Failure threshold and open period cannot be negative");
+		}
+		this.strict = strict;
+		this.failureThreshold = failureThreshold;
+		this.openNanos = unit.toNanos(openFor);
+	}
+	
+	public static GetterFailurePolicy strict() {
+		return new GetterFailurePolicy(true, 0, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	public boolean isStrict() {
+		return strict;
+	}
+	
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+	
+	/**
+	 * @return the number of times a getter has thrown.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+	
+	/**
+	 * @return the number of times a getter was not called because its breaker was open.
+	 */
+	public long getSkipped() {
+		return skipped.sum();
+	}
+	
+	/**
+	 * @return failure counts keyed by class name and property name, e.g. com.example.Product.price
+	 */
+	public Map<String, Long> getFailuresByProperty() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for(Map.Entry<String, LongAdder> entry : failuresByProperty.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+	
+	/**
+	 * @return true if the property's getter must not be called now.
+	 */
+	boolean isOpen(final GetterState property) {
+		final long openUntil = property.openUntil;
+		if(openUntil!=0L) {
+			if(System.nanoTime() - openUntil < 0L) {
+				skipped.increment();
+				return true;
+			}
+			// Let this call through; a failure opens the breaker again straight away.
+			property.openUntil = 0L;
+		}
+		return false;
+	}
+	
+	void succeeded(final GetterState property) {
+		if(property.consecutiveFailures.get()!=0) {
+			property.consecutiveFailures.set(0);
+		}
+	}
+	
+	void failed(final GetterState property, final Class<?> beanClass, final Throwable failure) {
+		failures.increment();
+		counter(property, beanClass).increment();
+		
+		if(failureThreshold>0 && property.consecutiveFailures.incrementAndGet()>=failureThreshold) {
+			// The count is only reset by a success, so a failure on the next call through opens the breaker again.
+			property.openUntil = System.nanoTime() + openNanos;
+		}
+		
+		if(strict) {
+			throw new BeanPropertyException(beanClass, property.propertyName, failure);
+		}
+	}
+	
+	/**
+	 * A getter's state may be shared by policies, and by a class and its proxies, so the counter it keeps is checked first.
+	 */
+	private LongAdder counter(final GetterState property, final Class<?> beanClass) {
+		GetterState.FailureCounter cached = property.failureCounter;
+		if(cached==null || cached.policy!=this || cached.beanClass!=beanClass) {
+			cached = new GetterState.FailureCounter(this, beanClass, counter(beanClass.getName() + "." + property.propertyName));
+			property.failureCounter = cached;
+		}
+		return cached.failures;
+	}
+	
+	private LongAdder counter(final String name) {
+		LongAdder counter = failuresByProperty.get(name);
+		if(counter==null) {
+			LongAdder created = new LongAdder();
+			counter = failuresByProperty.putIfAbsent(name, created);
+			if(counter==null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+}
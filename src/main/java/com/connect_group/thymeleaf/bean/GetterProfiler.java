@@ -0,0 +1,270 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times a sample of getter calls, to find the bean properties which make a page slow.
+ * 
+ *     GetterProfiler profiler = new GetterProfiler(0.01, 1, TimeUnit.MILLISECONDS);
+ *     profiler.register("myapp");
+ *     dialect.setGetterProfiler(profiler);
+ * 
+ * Each sampled call is added, without locking, to a latency histogram for its bean class and property.
+ * getSlowestProperties(n) lists the properties whose mean sampled time is at least the threshold, slowest first.
+ * Without a profiler, the default, getters are not timed at all.
+ * 
+ * Getters called by a compiled {@link BeanAttributeBinder} are not timed; the binder calls them directly.
+ * A getter returning a Supplier or Future is timed until it returns, not until its value is ready.
+ * 
+ * Figures are kept by class name, so redeployed classes do not stay reachable from here.
+ * 
+ * @author adam
+ *
+ */
+public class GetterProfiler implements GetterProfilerMBean {
+	
+	public static final String DOMAIN = BeanMetrics.DOMAIN;
+	
+	private static final int BUCKETS = 64;
+	
+	private final int period;
+	private final long thresholdNanos;
+	private final LongAdder sampled = new LongAdder();
+	private final ConcurrentMap<String, ConcurrentMap<String, PropertyTimings>> classes = new ConcurrentHashMap<String, ConcurrentMap<String, PropertyTimings>>();
+	
+	private MBeanServer server;
+	private ObjectName objectName;
+	
+	/**
+	 * @param sampleRate the fraction of getter calls to time, greater than 0 and at most 1; e.g. 0.01 for one in a hundred.
+	 * @param threshold the mean time below which a property is not reported as slow.
+	 */
+	public GetterProfiler(final double sampleRate, final long threshold, final TimeUnit unit) {
+		if(!(sampleRate>0D && sampleRate<=1D)) {
+			throw new IllegalArgumentException("Sample rate must be greater than 0 and at most 1");
+		}
+		if(threshold<0) {
+			throw new IllegalArgumentException("Threshold cannot be negative");
+		}
+		this.period = (int)Math.max(1L, Math.min(Integer.MAX_VALUE, Math.round(1D / sampleRate)));
+		this.thresholdNanos = unit.toNanos(threshold);
+	}
+	
+	/**
+	 * Call the property's getter, timing it if this call is sampled.
+	 */
+	static Object get(final GetterProfiler profiler, final PropertyPlan property, final Object bean) throws Exception {
+		if(profiler==null || !profiler.sample()) {
+			return property.accessor.get(bean);
+		}
+		
+		final long start = System.nanoTime();
+		try {
+			return property.accessor.get(bean);
+		} finally {
+			profiler.record(bean.getClass(), property.propertyName, System.nanoTime() - start);
+		}
+	}
+	
+	boolean sample() {
+		return period==1 || ThreadLocalRandom.current().nextInt(period)==0;
+	}
+	
+	void record(final Class<?> beanClass, final String propertyName, final long nanos) {
+		sampled.increment();
+		
+		final String className = beanClass.getName();
+		ConcurrentMap<String, PropertyTimings> properties = classes.get(className);
+		if(properties==null) {
+			ConcurrentMap<String, PropertyTimings> created = new ConcurrentHashMap<String, PropertyTimings>();
+			properties = classes.putIfAbsent(className, created);
+			if(properties==null) {
+				properties = created;
+			}
+		}
+		
+		PropertyTimings timings = properties.get(propertyName);
+		if(timings==null) {
+			PropertyTimings created = new PropertyTimings(className, propertyName);
+			timings = properties.putIfAbsent(propertyName, created);
+			if(timings==null) {
+				timings = created;
+			}
+		}
+		timings.record(nanos);
+	}
+	
+	/**
+	 * Register with the platform MBean server as com.connect_group.thymeleaf.bean:type=GetterProfiler,name=<i>name</i>.
+	 */
+	public ObjectName register(final String name) throws JMException {
+		return register(ManagementFactory.getPlatformMBeanServer(), new ObjectName(DOMAIN + ":type=GetterProfiler,name=" + ObjectName.quote(name)));
+	}
+	
+	public synchronized ObjectName register(final MBeanServer server, final ObjectName name) throws JMException {
+		server.registerMBean(this, name);
+		this.server = server;
+		this.objectName = name;
+		return name;
+	}
+	
+	/**
+	 * Unregister from the server, and under the name, given when last registered.
+	 */
+	public synchronized void unregister() throws JMException {
+		if(objectName!=null) {
+			server.unregisterMBean(objectName);
+			server = null;
+			objectName = null;
+		}
+	}
+	
+	public double getSampleRate() {
+		return 1D / period;
+	}
+	
+	public long getThresholdNanos() {
+		return thresholdNanos;
+	}
+	
+	public long getSampledInvocations() {
+		return sampled.sum();
+	}
+	
+	/**
+	 * @return up to n properties whose mean sampled time is at least the threshold, slowest first.
+	 */
+	public List<PropertyTimings> getSlowestProperties(final int n) {
+		List<PropertyTimings> slow = new ArrayList<PropertyTimings>();
+		for(Map<String, PropertyTimings> properties : classes.values()) {
+			for(PropertyTimings timings : properties.values()) {
+				if(timings.getSamples()>0 && timings.getMeanNanos()>=thresholdNanos) {
+					slow.add(timings);
+				}
+			}
+		}
+		
+		Collections.sort(slow, new Comparator<PropertyTimings>() {
+			public int compare(PropertyTimings a, PropertyTimings b) {
+				return Long.compare(b.getMeanNanos(), a.getMeanNanos());
+			}
+		});
+		return slow.size()>n ? new ArrayList<PropertyTimings>(slow.subList(0, Math.max(0, n))) : slow;
+	}
+	
+	public String[] getSlowestProperties() {
+		List<PropertyTimings> slow = getSlowestProperties(DEFAULT_REPORTED_PROPERTIES);
+		String[] result = new String[slow.size()];
+		for(int i=0; i<result.length; i++) {
+			result[i] = slow.get(i).toString();
+		}
+		return result;
+	}
+	
+	public void reset() {
+		sampled.reset();
+		classes.clear();
+	}
+	
+	/**
+	 * The sampled times of one property of one bean class.
+	 */
+	public static final class PropertyTimings {
+		private final String beanClassName;
+		private final String propertyName;
+		private final LongAdder samples = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final AtomicLong maximumNanos = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+		
+		PropertyTimings(String beanClassName, String propertyName) {
+			this.beanClassName = beanClassName;
+			this.propertyName = propertyName;
+		}
+		
+		void record(final long elapsed) {
+			samples.increment();
+			nanos.add(elapsed);
+			histogram.incrementAndGet(BeanMetrics.bucket(elapsed));
+			long maximum = maximumNanos.get();
+			while(elapsed>maximum && !maximumNanos.compareAndSet(maximum, elapsed)) {
+				maximum = maximumNanos.get();
+			}
+		}
+		
+		public String getBeanClassName() {
+			return beanClassName;
+		}
+		
+		public String getPropertyName() {
+			return propertyName;
+		}
+		
+		public long getSamples() {
+			return samples.sum();
+		}
+		
+		public long getMeanNanos() {
+			long count = samples.sum();
+			return count==0 ? 0 : nanos.sum() / count;
+		}
+		
+		public long getMaximumNanos() {
+			return maximumNanos.get();
+		}
+		
+		/**
+		 * @return 64 buckets; bucket i counts samples of at least 2^i and less than 2^(i+1) nanoseconds.
+		 */
+		public long[] getHistogram() {
+			long[] result = new long[BUCKETS];
+			for(int i=0; i<BUCKETS; i++) {
+				result[i] = histogram.get(i);
+			}
+			return result;
+		}
+		
+		@Override
+		public String toString() {
+			return beanClassName + "." + propertyName
+					+ " samples=" + getSamples()
+					+ " meanNanos=" + getMeanNanos()
+					+ " maxNanos=" + getMaximumNanos();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * JMX view of {@link GetterProfiler}.
+ * 
+ * @author adam
+ *
+ */
+public interface GetterProfilerMBean {
+	
+	int DEFAULT_REPORTED_PROPERTIES = 20;
+	
+	double getSampleRate();
+	
+	long getThresholdNanos();
+	
+	long getSampledInvocations();
+	
+	/**
+	 * @return one line for each of the 20 slowest properties above the threshold: class, property, samples, mean and maximum nanoseconds.
+	 */
+	String[] getSlowestProperties();
+	
+	void reset();
+	
+}
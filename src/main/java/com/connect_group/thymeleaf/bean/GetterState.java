@@ -0,0 +1,62 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The circuit breaker state of one getter, kept by {@link GetterFailurePolicy}.
+ * 
+ * Introspected getters keep it on their {@link PropertyPlan}; getters called by a compiled binder keep it on the binder,
+ * so that a bound class is never introspected.
+ * 
+ * @author adam
+ *
+ */
+class GetterState {
+	
+	final String propertyName;
+	
+	volatile long openUntil;
+	final AtomicInteger consecutiveFailures = new AtomicInteger();
+	
+	/** The failure counter last used for this getter, so a failure need not look it up by name. */
+	volatile FailureCounter failureCounter;
+	
+	GetterState(String propertyName) {
+		this.propertyName = propertyName;
+	}
+	
+	/**
+	 * A policy's count of failures for one bean class and property.
+	 */
+	static final class FailureCounter {
+		final GetterFailurePolicy policy;
+		final Class<?> beanClass;
+		final LongAdder failures;
+		
+		FailureCounter(GetterFailurePolicy policy, Class<?> beanClass, LongAdder failures) {
+			this.policy = policy;
+			this.beanClass = beanClass;
+			this.failures = failures;
+		}
+	}
+}
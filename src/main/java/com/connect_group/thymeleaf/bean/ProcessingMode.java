@@ -0,0 +1,44 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * How the bean processor turns a bean into attributes.
+ * 
+ * @see BeanDialect#setProcessingMode(ProcessingMode)
+ * @author adam
+ *
+ */
+public enum ProcessingMode {
+	
+	/**
+	 * Read every property into a map of attribute names to values, then apply the map to the element.
+	 */
+	REFLECTIVE,
+	
+	/**
+	 * Build a writer for each bean class which reads the getters and sets the element's attributes directly,
+	 * without an intermediate map.
+	 * 
+	 * Beans whose getters cannot be bound to generated accessors, and Maps, are processed reflectively instead.
+	 */
+	GENERATED
+	
+}
@@ -0,0 +1,40 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * Reads a single property from a bean.
+ * 
+ * Accessors are bound to their getter once, when the bean class is planned,
+ * and are then shared by every render of that class.
+ * 
+ * @see PropertyAccessors
+ * @author adam
+ *
+ */
+interface PropertyAccessor {
+	
+	/**
+	 * @return the value returned by the getter
+	 * @throws Exception anything thrown by the getter itself, unwrapped.
+	 */
+	Object get(Object bean) throws Exception;
+	
+}
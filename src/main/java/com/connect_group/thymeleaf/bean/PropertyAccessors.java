@@ -0,0 +1,197 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+/**
+ * Binds getters to the cheapest {@link PropertyAccessor} available.
+ * 
+ * In order of preference,
+ * 
+ *   1. A Function generated by the LambdaMetafactory, which the JIT can inline like a direct call.
+ *      Only possible when the getter and its class are public and visible from this class loader.
+ *   2. A MethodHandle, for getters which are not public, or which live in anonymous or inner classes.
+ *   3. Plain reflection, if neither of the above can be bound.
+ * 
+ * @author adam
+ *
+ */
+final class PropertyAccessors {
+	
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private PropertyAccessors() {
+	}
+	
+	static PropertyAccessor create(final Method method) {
+		PropertyAccessor accessor = null;
+		
+		if(isDirectlyAccessible(method)) {
+			accessor = lambda(method);
+		}
+		
+		if(accessor==null) {
+			accessor = methodHandle(method);
+		}
+		
+		if(accessor==null) {
+			accessor = reflective(method);
+		}
+		
+		return accessor;
+	}
+
+	/**
+	 * @return true if the accessor calls its getter through a generated Function rather than a MethodHandle or reflection.
+	 */
+	static boolean isGenerated(final PropertyAccessor accessor) {
+		return accessor instanceof FunctionAccessor;
+	}
+
+	static PropertyAccessor reflective(final Method method) {
+		return new ReflectiveAccessor(method);
+	}
+
+	@SuppressWarnings("unchecked")
+	static PropertyAccessor lambda(final Method method) {
+		try {
+			MethodHandle getter = LOOKUP.unreflect(method);
+			MethodType instantiatedType = MethodType.methodType(boxed(method.getReturnType()), method.getDeclaringClass());
+			
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, 
+					"apply", 
+					MethodType.methodType(Function.class), 
+					GETTER_TYPE, 
+					getter, 
+					instantiatedType);
+			
+			return new FunctionAccessor((Function<Object,Object>)site.getTarget().invoke());
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+	
+	static PropertyAccessor methodHandle(final Method method) {
+		try {
+			method.setAccessible(true);
+			return new MethodHandleAccessor(LOOKUP.unreflect(method).asType(GETTER_TYPE));
+		} catch (Exception e) {
+			return null;
+		} 
+	}
+	
+	private static boolean isDirectlyAccessible(final Method method) {
+		Class<?> type = method.getDeclaringClass();
+		if(!Modifier.isPublic(method.getModifiers()) || type.isAnonymousClass()) {
+			return false;
+		}
+		
+		// Nested classes must be public all the way out.
+		for(Class<?> c = type; c!=null; c=c.getEnclosingClass()) {
+			if(!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		
+		// A generated lambda links against our class loader; webapp classes in a child loader are not visible to it.
+		try {
+			return Class.forName(type.getName(), false, PropertyAccessors.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+	
+	private static Class<?> boxed(final Class<?> type) {
+		if(!type.isPrimitive()) return type;
+		if(type==boolean.class) return Boolean.class;
+		if(type==int.class) return Integer.class;
+		if(type==long.class) return Long.class;
+		if(type==double.class) return Double.class;
+		if(type==float.class) return Float.class;
+		if(type==char.class) return Character.class;
+		if(type==byte.class) return Byte.class;
+		if(type==short.class) return Short.class;
+		return Void.class;
+	}
+	
+	private static final class FunctionAccessor implements PropertyAccessor {
+		private final Function<Object,Object> function;
+		
+		FunctionAccessor(Function<Object,Object> function) {
+			this.function = function;
+		}
+
+		public Object get(Object bean) throws Exception {
+			return function.apply(bean);
+		}
+	}
+	
+	private static final class MethodHandleAccessor implements PropertyAccessor {
+		private final MethodHandle handle;
+		
+		MethodHandleAccessor(MethodHandle handle) {
+			this.handle = handle;
+		}
+		
+		public Object get(Object bean) throws Exception {
+			try {
+				return handle.invokeExact(bean);
+			} catch (Exception e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+	}
+
+	private static final class ReflectiveAccessor implements PropertyAccessor {
+		private final Method method;
+		
+		ReflectiveAccessor(Method method) {
+			this.method = method;
+		}
+
+		public Object get(Object bean) throws Exception {
+			try {
+				return method.invoke(bean);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof Exception) {
+					throw (Exception)cause;
+				}
+				throw e;
+			}
+		}
+	}
+}
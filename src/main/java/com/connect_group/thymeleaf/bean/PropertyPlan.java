@@ -0,0 +1,92 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Everything needed to turn one bean property into an attribute,
+ * worked out once when the class is first seen.
+ * 
+ * @author adam
+ *
+ */
+final class PropertyPlan extends GetterState {
+	
+	enum ValueKind { STRING, BOOLEAN, DEFERRED, OBJECT }
+
+	final String attributeName;
+	final Method readMethod;
+	final PropertyAccessor accessor;
+	final ValueKind valueKind;
+	final boolean dataMap;
+	final String booleanTrueResult;
+	final boolean constant;
+	
+	// The value of a constant property, once it has been read; folded is written last.
+	private String constantValue;
+	private volatile boolean folded;
+	
+	PropertyPlan(String propertyName, Method readMethod) {
+		super(propertyName);
+		this.attributeName = AttributeNames.processName(propertyName);
+		this.readMethod = readMethod;
+		this.accessor = PropertyAccessors.create(readMethod);
+		
+		Class<?> type = readMethod.getReturnType();
+		this.dataMap = "data".equals(attributeName) && Map.class.isAssignableFrom(type);
+		this.valueKind = valueKindOf(type);
+		
+		// The "true" value of a boolean attribute is the raw property name, not the processed one.
+		this.booleanTrueResult = propertyName;
+		
+		this.constant = !dataMap && valueKind!=ValueKind.DEFERRED && readMethod.isAnnotationPresent(ConstantAttribute.class);
+	}
+	
+	boolean isFolded() {
+		return folded;
+	}
+	
+	String getConstantValue() {
+		return constantValue;
+	}
+	
+	/**
+	 * Remember the value of a {@link ConstantAttribute} property; two threads may both read it first, with the same result.
+	 */
+	void fold(final String value) {
+		constantValue = value;
+		folded = true;
+	}
+
+	private static ValueKind valueKindOf(Class<?> type) {
+		if(type==String.class) {
+			return ValueKind.STRING;
+		}
+		if(type==boolean.class || type==Boolean.class) {
+			return ValueKind.BOOLEAN;
+		}
+		if(PropertyPrefetcher.isDeferred(type)) {
+			return ValueKind.DEFERRED;
+		}
+		return ValueKind.OBJECT;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Resolves bean properties whose getters return a {@link Supplier}, {@link Future} or {@link CompletableFuture}.
+ * 
+ * When a bean is read, every such property is started before any attribute is written: suppliers are run on the
+ * executor and futures are left running.  They are then joined, all against one deadline per element, so a bean
+ * with several slow properties takes about as long as the slowest of them.  A property which fails, or is not 
+ * ready by the deadline, is treated as null and so is not written.
+ * 
+ * Without an executor suppliers are run one after another, as each attribute is written.
+ * 
+ *     dialect.setPrefetcher(new PropertyPrefetcher(PropertyPrefetcher.defaultExecutor(), 2, TimeUnit.SECONDS));
+ * 
+ * @author adam
+ *
+ */
+public final class PropertyPrefetcher {
+	
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000L;
+	
+	/**
+	 * No executor, and the default timeout.
+	 */
+	public static final PropertyPrefetcher INLINE = new PropertyPrefetcher(null, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	
+	private final Executor executor;
+	private final long timeoutNanos;
+	
+	/**
+	 * @param executor runs suppliers, or null to run them on the rendering thread.
+	 * @param timeout how long to wait for all of an element's properties.
+	 */
+	public PropertyPrefetcher(final Executor executor, final long timeout, final TimeUnit unit) {
+		if(timeout<0) {
+			throw new IllegalArgumentException("Timeout cannot be negative");
+		}
+		this.executor = executor;
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+	
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+	
+	/**
+	 * A virtual thread per task where the JVM has them (Java 21 and later); 
+	 * otherwise a cached pool of daemon threads.
+	 */
+	public static ExecutorService defaultExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (Exception e) {
+			return Executors.newCachedThreadPool(new DaemonThreadFactory());
+		}
+	}
+	
+	static boolean isDeferred(final Class<?> type) {
+		return Supplier.class.isAssignableFrom(type) || Future.class.isAssignableFrom(type);
+	}
+	
+	/**
+	 * Start each deferred property of the plan.
+	 * 
+	 * A getter which returns null has succeeded; otherwise the property only succeeds, or fails, when it is joined.
+	 * The profiler times the getter, which returns the Supplier or Future, and not the work it defers.
+	 * 
+	 * @param profiler times a sample of the getters, or null.
+	 * @return the started values, indexed as the plan's properties; null for any property which is not deferred.
+	 */
+	Object[] start(final Object bean, final BeanPlan plan, final GetterFailurePolicy policy, final GetterProfiler profiler) {
+		final PropertyPlan[] properties = plan.properties;
+		final Object[] started = new Object[properties.length];
+		for(int i=0; i<properties.length; i++) {
+			PropertyPlan property = properties[i];
+			if(property.valueKind==PropertyPlan.ValueKind.DEFERRED && !policy.isOpen(property)) {
+				try {
+					started[i] = start(GetterProfiler.get(profiler, property, bean));
+					if(started[i]==null) {
+						policy.succeeded(property);
+					}
+				} catch (Exception e) {
+					policy.failed(property, bean.getClass(), e);
+				}
+			}
+		}
+		return started;
+	}
+	
+	long deadline() {
+		return System.nanoTime() + timeoutNanos;
+	}
+	
+	/**
+	 * A property which fails, or misses the deadline, is reported to the policy as a failure of its getter.
+	 * A Future which misses the deadline is cancelled, along with every Future after it in the batch which is 
+	 * still running, as none of them can be waited for any longer.
+	 * 
+	 * @return the value of the started (or unstarted) Supplier or Future at the index, or null if it failed or missed the deadline.
+	 */
+	Object join(final Object[] started, final int index, final long deadline, final PropertyPlan property, final Class<?> beanClass, final GetterFailurePolicy policy) {
+		final Object value = started[index];
+		if(value==null) {
+			return null;
+		}
+		
+		try {
+			Object result = null;
+			if(value instanceof Future<?>) {
+				result = ((Future<?>) value).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} else if(value instanceof Supplier<?>) {
+				result = ((Supplier<?>) value).get();
+			}
+			policy.succeeded(property);
+			return result;
+		} catch (TimeoutException e) {
+			cancel(started, index);
+			policy.failed(property, beanClass, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			policy.failed(property, beanClass, e);
+		} catch (ExecutionException e) {
+			policy.failed(property, beanClass, e.getCause()==null ? e : e.getCause());
+		} catch (Exception e) {
+			policy.failed(property, beanClass, e);
+		}
+		return null;
+	}
+	
+	/**
+	 * Cancel the Futures from the index on which have not finished; those which have are still used.
+	 */
+	private static void cancel(final Object[] started, final int from) {
+		for(int i=from; i<started.length; i++) {
+			if(started[i] instanceof Future<?> && !((Future<?>) started[i]).isDone()) {
+				((Future<?>) started[i]).cancel(true);
+			}
+		}
+	}
+	
+	private Object start(final Object value) {
+		if(executor!=null && value instanceof Supplier<?> && !(value instanceof Future<?>)) {
+			return CompletableFuture.supplyAsync((Supplier<?>) value, executor);
+		}
+		return value;
+	}
+	
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "bean-prefetch-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
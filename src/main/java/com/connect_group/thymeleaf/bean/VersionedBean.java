@@ -0,0 +1,41 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf.bean;
+
+/**
+ * A bean which can say when its attributes have changed.
+ * 
+ * When the dialect has a {@link BeanAttributeMemo}, the attributes of each instance are read again only 
+ * when its version differs from the version they were last read at.
+ * 
+ * The method is deliberately not a getter, so it does not become an attribute.
+ * 
+ * @see ImmutableBean
+ * @author adam
+ *
+ */
+public interface VersionedBean {
+
+	/**
+	 * @return a token, compared with equals(), which changes whenever any attribute of the bean changes.
+	 */
+	Object attributeVersion();
+	
+}
@@ -0,0 +1,186 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.thymeleaf.Arguments;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.processor.ProcessorMatchingContext;
+import org.thymeleaf.processor.ProcessorResult;
+
+public class AllocationTests {
+	
+	private static final int WARM_UP = 20000;
+	private static final int ITERATIONS = 100000;
+	
+	public static class Link {
+		public String getHref() { return "/home"; }
+		public String getTitle() { return "Home"; }
+		public boolean isDisabled() { return true; }
+	}
+	
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testEvaluatedValueStringIsLazy() {
+		final int[] calls = new int[1];
+		Object value = new Object() {
+			@Override
+			public String toString() {
+				calls[0]++;
+				return "value";
+			}
+		};
+		
+		AttributeData data = new AttributeData("bean:use", new Element("a"), "${value}", value, null, null, false);
+		assertEquals(0, calls[0]);
+		assertNull(data.evaluatedAttributeValueString);
+		assertEquals("value", data.getEvaluatedAttributeValueString());
+		assertEquals("value", data.getEvaluatedAttributeValueString());
+		assertEquals(1, calls[0]);
+		assertEquals("", new AttributeData("bean:use", new Element("a"), null, "/").getEvaluatedAttributeValueString());
+		
+		// The public constructor fills in the deprecated fields, as it always did.
+		data = new AttributeData("bean:use", new Element("a"), value, "/");
+		assertEquals("value", data.evaluatedAttributeValueString);
+		assertEquals("/", data.contextRoot);
+		assertEquals(2, calls[0]);
+	}
+	
+	@Test
+	public void testAttributeNameLookupDoesNotAllocate() {
+		final BeanProcessor processor = new BeanProcessor();
+		final ProcessorMatchingContext context = new ProcessorMatchingContext(new BeanDialect(), "bean");
+		final Element element = new Element("a");
+		element.setAttribute("bean:use", "${link}");
+		
+		assertEquals("bean:use", processor.getAttributeName(context, element));
+		assertAllocationFree(new Runnable() {
+			public void run() {
+				processor.getAttributeName(context, element);
+			}
+		});
+	}
+	
+	@Test
+	public void testReadingBeanDoesNotAllocate() {
+		final BeanAttributeReader reader = new BeanAttributeReader(BeanAttributeBinders.NONE, new BeanSettings());
+		final Link link = new Link();
+		final int[] attributes = new int[1];
+		final AttributeSource.Visitor visitor = new AttributeSource.Visitor() {
+			public void attribute(String name, String value) {
+				attributes[0]++;
+			}
+		};
+		
+		assertAllocationFree(new Runnable() {
+			public void run() {
+				reader.read(link, visitor);
+			}
+		});
+		assertEquals(3 * (WARM_UP + ITERATIONS), attributes[0]);
+	}
+	
+	/**
+	 * Measuring a whole doProcess call is at the mercy of the JVM, so this only runs under the allocation profile.
+	 */
+	@Test
+	public void testProcessingAllocatesNoMoreThanThymeleaf() {
+		Assume.assumeTrue(Boolean.getBoolean("allocation.tests"));
+		
+		final Link link = new Link();
+		final BaseAttributeProcessor processor = new BaseAttributeProcessor(BeanProcessor.ATTRIBUTE_NAME) {
+			@Override
+			protected Object parseExpression(Arguments arguments, String expressionString) {
+				// Evaluating the expression is Thymeleaf's own work.
+				return link;
+			}
+			
+			@Override
+			protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+				return data.evaluatedAttributeValue==link ? ProcessorResult.OK : null;
+			}
+			
+			@Override
+			protected boolean usesDeprecatedAttributeFields() {
+				return false;
+			}
+			
+			@Override
+			protected boolean isIgnoredAttribute(String modifiedAttributeName) {
+				return false;
+			}
+			
+			@Override
+			public int getPrecedence() {
+				return BeanProcessor.PRECEDENCE;
+			}
+		};
+		final ProcessorMatchingContext context = new ProcessorMatchingContext(new BeanDialect(), "bean");
+		final Element element = new Element("a");
+		
+		// doProcess removes the attribute, so each call puts it back first; setting and removing it is Thymeleaf's work.
+		final Runnable resetAttribute = new Runnable() {
+			public void run() {
+				element.setAttribute("bean:use", "${link}");
+			}
+		};
+		long thymeleaf = allocatedBytes(new Runnable() {
+			public void run() {
+				resetAttribute.run();
+				element.removeAttribute("bean:use");
+			}
+		});
+		long total = allocatedBytes(new Runnable() {
+			public void run() {
+				resetAttribute.run();
+				processor.doProcess(null, context, element);
+			}
+		});
+		assertFalse(element.hasAttribute("bean:use"));
+		
+		
+		// The one AttributeData handed to the processor, whose fields are public, is all doProcess may add.
+		final Object[] escaped = new Object[1];
+		long attributeData = allocatedBytes(new Runnable() {
+			public void run() {
+				escaped[0] = new AttributeData("bean:use", element, "${link}", link, null, processor, false);
+			}
+		});
+		
+		long allocated = total - thymeleaf - attributeData;
+		assertTrue(allocated + " bytes allocated by doProcess in " + ITERATIONS + " calls, besides its AttributeData", allocated < ITERATIONS);
+	}
+	
+	/**
+	 * Less than a byte per call on average, which leaves room for the odd allocation by the JVM itself.
+	 */
+	private static void assertAllocationFree(Runnable task) {
+		long allocated = allocatedBytes(task);
+		assertTrue(allocated + " bytes allocated in " + ITERATIONS + " calls", allocated < ITERATIONS);
+	}
+	
+	/**
+	 * @return the bytes allocated by ITERATIONS runs of the task, after warming it up.
+	 */
+	private static long allocatedBytes(Runnable task) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+		Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+		
+		for(int i=0; i<WARM_UP; i++) {
+			task.run();
+		}
+		
+		long thread = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(thread);
+		for(int i=0; i<ITERATIONS; i++) {
+			task.run();
+		}
+		return allocations.getThreadAllocatedBytes(thread) - before;
+	}
+}
@@ -0,0 +1,101 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AttributeValuesTests {
+	
+	private static String asString(Object obj) {
+		return AttributeValues.asString(obj, "yes", null);
+	}
+	
+	@Test
+	public void testScalars() {
+		assertNull(asString(null));
+		assertEquals("abc", asString("abc"));
+		assertEquals("yes", asString(Boolean.TRUE));
+		assertNull(asString(Boolean.FALSE));
+		assertEquals("42", asString(42));
+	}
+	
+	@Test
+	public void testEmptyAndSingleElementCollections() {
+		assertEquals("", asString(Collections.emptyList()));
+		assertEquals("", asString(new Object[0]));
+		assertEquals("", asString(new int[0]));
+		assertEquals("", asString(new char[0]));
+		
+		String only = "only";
+		assertSame(only, asString(Collections.singletonList(only)));
+		assertSame(only, asString(new LinkedList<String>(Arrays.asList(only))));
+		assertSame(only, asString(new HashSet<String>(Arrays.asList(only))));
+		assertSame(only, asString(new Object[] {only}));
+		assertEquals("true", asString(Collections.singletonList(Boolean.TRUE)));
+		assertEquals("null", asString(Collections.singletonList(null)));
+	}
+	
+	@Test
+	public void testPrimitiveArrays() {
+		assertEquals("1 2 3", asString(new byte[] {1,2,3}));
+		assertEquals("1 2 3", asString(new short[] {1,2,3}));
+		assertEquals("1 -2 3", asString(new int[] {1,-2,3}));
+		assertEquals("10000000000 2", asString(new long[] {10000000000L,2}));
+		assertEquals("1.5 2.0", asString(new float[] {1.5F,2F}));
+		assertEquals("1.0 2.7", asString(new double[] {1.0D,2.7D}));
+		assertEquals("a b c", asString(new char[] {'a','b','c'}));
+		assertEquals("x", asString(new char[] {'x'}));
+	}
+	
+	@Test
+	public void testMixedAndNestedCollections() {
+		List<Object> list = new ArrayList<Object>();
+		list.add("a");
+		list.add(Boolean.FALSE);
+		list.add(null);
+		list.add(new int[] {1,2});
+		list.add(Arrays.asList("b", new double[][] {{3.0D}}));
+		
+		assertEquals("a false null 1 2 b 3.0", asString(list));
+	}
+	
+	@Test
+	public void testEmptyNestedCollectionsKeepTheirSeparators() {
+		assertEquals("a  b", asString(Arrays.asList("a", Collections.emptyList(), "b")));
+		assertEquals("a", asString(Arrays.asList(Collections.emptyList(), "a")));
+		assertEquals("a ", asString(Arrays.asList("a", "")));
+	}
+	
+	@Test
+	public void testBooleanArrayIsNotASequence() {
+		boolean[] flags = new boolean[] {true};
+		assertEquals(flags.toString(), asString(flags));
+	}
+	
+	@Test
+	public void testReentrantToString() {
+		final Object inner = new Object() {
+			@Override
+			public String toString() {
+				return asString(Arrays.asList("c", "d"));
+			}
+		};
+		
+		assertEquals("a c d b", asString(Arrays.asList("a", inner, "b")));
+		assertEquals("e f", asString(Arrays.asList("e", "f")));
+	}
+	
+	@Test
+	public void testMergeTokens() {
+		assertEquals("a b c", AttributeValues.mergeTokens(" a  b ", "b c a"));
+		assertEquals("c", AttributeValues.mergeTokens("", "c c"));
+		assertEquals("a", AttributeValues.mergeTokens("a", ""));
+	}
+}
@@ -0,0 +1,125 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BeanAttributeMemoTests {
+	
+	@ImmutableBean
+	public static class NavigationLink {
+		int reads;
+		public String getHref() { reads++; return "/home"; }
+	}
+	
+	public static class Price implements VersionedBean {
+		int reads;
+		int version;
+		public String getTitle() { reads++; return "price " + version; }
+		public Object attributeVersion() { return Integer.valueOf(version); }
+	}
+	
+	public static class Plain {
+		int reads;
+		public String getHref() { reads++; return "/plain"; }
+	}
+	
+	@Test
+	public void testImmutableBeanIsReadOnce() {
+		BeanAttributeMemo memo = new BeanAttributeMemo();
+		BeanAttributeReader reader = reader(memo);
+		NavigationLink link = new NavigationLink();
+		
+		assertEquals("/home", reader.getProperties(link).get("href"));
+		assertEquals("/home", reader.getProperties(link).get("href"));
+		assertEquals(1, link.reads);
+		assertEquals(1, memo.getHits());
+		assertEquals(1, memo.getMisses());
+		assertEquals(0.5D, memo.getHitRate(), 0D);
+	}
+	
+	@Test
+	public void testVersionedBeanIsReadAgainWhenVersionChanges() {
+		BeanAttributeReader reader = reader(new BeanAttributeMemo());
+		Price price = new Price();
+		
+		reader.getProperties(price);
+		assertEquals("price 0", reader.getProperties(price).get("title"));
+		assertEquals(1, price.reads);
+		
+		price.version++;
+		Map<String,String> map = reader.getProperties(price);
+		assertEquals("price 1", map.get("title"));
+		assertFalse(map.containsKey("attribute-version"));
+		assertEquals(2, price.reads);
+	}
+	
+	@Test
+	public void testOtherBeansAreNotMemoized() {
+		BeanAttributeMemo memo = new BeanAttributeMemo();
+		BeanAttributeReader reader = reader(memo);
+		Plain plain = new Plain();
+		
+		reader.getProperties(plain);
+		reader.getProperties(plain);
+		assertEquals(2, plain.reads);
+		assertEquals(0, memo.size());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedBeanIsEvicted() {
+		BeanAttributeMemo memo = new BeanAttributeMemo(2);
+		BeanAttributeReader reader = reader(memo);
+		NavigationLink first = new NavigationLink();
+		NavigationLink second = new NavigationLink();
+		
+		reader.getProperties(first);
+		reader.getProperties(second);
+		reader.getProperties(first);
+		reader.getProperties(new NavigationLink());
+		reader.getProperties(first);
+		reader.getProperties(second);
+		
+		assertEquals(1, first.reads);
+		assertEquals(2, second.reads);
+		assertEquals(2, memo.size());
+		assertEquals(2, memo.getEvictions());
+	}
+	
+	@Test
+	public void testStripedMemoKeepsItsMaximumSize() {
+		BeanAttributeMemo memo = new BeanAttributeMemo(1000);
+		Map<String,String> attributes = java.util.Collections.singletonMap("href", "/home");
+		Object[] beans = new Object[5000];
+		for(int i=0; i<beans.length; i++) {
+			beans[i] = new Object();
+			memo.put(beans[i], null, attributes);
+		}
+		
+		assertEquals(1000, memo.size());
+		assertEquals(4000, memo.getEvictions());
+		assertNotNull(memo.get(beans[beans.length-1], null));
+		assertNull(memo.get(new Object(), null));
+	}
+	
+	@Test
+	public void testMemoizedBeanRendersAsBefore() {
+		String template = "<a title=\"static\" bean:use=\"${link}\">Hello!</a>";
+		BeanDialect dialect = new BeanDialect();
+		dialect.setAttributeMemo(new BeanAttributeMemo());
+		NavigationLink link = new NavigationLink();
+		
+		String expected = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect()), template, "link", new NavigationLink());
+		assertEquals(expected, BeanDialectTests.process(BeanDialectTests.engine(dialect), template, "link", link));
+		assertEquals(expected, BeanDialectTests.process(BeanDialectTests.engine(dialect), template, "link", link));
+		assertEquals(1, link.reads);
+	}
+	
+	private static BeanAttributeReader reader(BeanAttributeMemo memo) {
+		BeanSettings settings = new BeanSettings();
+		settings.setAttributeMemo(memo);
+		return settings.createReader(BeanAttributeBinders.NONE);
+	}
+}
@@ -0,0 +1,153 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BeanAttributeRendererTests {
+	
+	public static class LinkBean {
+		public String getHref() { return "/search?q=fish&chips"; }
+		public String getTitle() { return "\"Fish\" <and> 'chips'"; }
+		public boolean isHidden() { return true; }
+		public boolean isDisabled() { return false; }
+		public List<String> getCssClass() { return Arrays.asList("a", "b"); }
+		public String getText() { return "Fish & Chips"; }
+	}
+	
+	private final BeanAttributeRenderer renderer = new BeanAttributeRenderer();
+	
+	@Test
+	public void testRenderAttributes() throws Exception {
+		StringBuilder out = new StringBuilder();
+		renderer.renderAttributes(new LinkBean(), out);
+		
+		String html = out.toString();
+		assertTrue(html, html.contains(" href=\"/search?q=fish&amp;chips\""));
+		assertTrue(html, html.contains(" title=\"&quot;Fish&quot; &lt;and&gt; &#39;chips&#39;\""));
+		assertTrue(html, html.contains(" hidden=\"hidden\""));
+		assertTrue(html, html.contains(" class=\"a b\""));
+		assertFalse(html, html.contains("disabled"));
+		assertFalse(html, html.contains("Chips"));
+	}
+	
+	@Test
+	public void testRenderElement() throws Exception {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("href", "/home");
+		map.put("utext", "<b>Home</b>");
+		
+		StringBuilder out = new StringBuilder();
+		renderer.renderElement("a", map, out);
+		assertEquals("<a href=\"/home\"><b>Home</b></a>", out.toString());
+	}
+	
+	@Test
+	public void testRenderBody() throws Exception {
+		StringBuilder out = new StringBuilder();
+		renderer.renderBody(new LinkBean(), out);
+		assertEquals("Fish &amp; Chips", out.toString());
+	}
+	
+	@Test
+	public void testRepeatedNameIsWrittenOnce() throws Exception {
+		AttributeSource source = new AttributeSource() {
+			public void visitAttributes(Visitor visitor) {
+				visitor.attribute("data-x", "1");
+				visitor.attribute("title", "t");
+				visitor.attribute("data-x", "2");
+				visitor.attribute("data-y", "1");
+				visitor.attribute("data-y", "");
+			}
+		};
+		
+		StringBuilder out = new StringBuilder();
+		renderer.renderAttributes(source, out);
+		assertEquals(" data-x=\"2\" title=\"t\"", out.toString());
+	}
+	
+	public static class ConflictingDataBean {
+		public Map<String,Object> getData() {
+			Map<String,Object> map = new HashMap<String,Object>();
+			map.put("mobile-url", "/from-map");
+			return map;
+		}
+		public String getDataMobileUrl() { return "/from-getter"; }
+	}
+	
+	@Test
+	public void testRepeatedNameMatchesBeanUse() throws Exception {
+		StringBuilder out = new StringBuilder();
+		renderer.renderElement("a", new ConflictingDataBean(), out);
+		
+		String processed = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect()), "<a bean:use=\"${bean}\"></a>", "bean", new ConflictingDataBean());
+		assertEquals(processed, out.toString());
+		
+		String generated = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect(ProcessingMode.GENERATED)), "<a bean:use=\"${bean}\"></a>", "bean", new ConflictingDataBean());
+		assertEquals(generated, out.toString());
+	}
+	
+	public static class UnsafeDataBean {
+		public Map<String,Object> getData() {
+			Map<String,Object> map = new HashMap<String,Object>();
+			map.put("ok", "1");
+			map.put("x\" onclick=\"alert(1)", "2");
+			map.put("a b", "3");
+			return map;
+		}
+	}
+	
+	@Test
+	public void testInvalidNamesAreNotWritten() throws Exception {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("href", "/home");
+		map.put("onclick=alert(1) x", "y");
+		map.put("><script>", "z");
+		
+		StringBuilder out = new StringBuilder();
+		renderer.renderAttributes(map, out);
+		assertEquals(" href=\"/home\"", out.toString());
+		
+		out = new StringBuilder();
+		renderer.renderAttributes(new UnsafeDataBean(), out);
+		assertEquals(" data-ok=\"1\"", out.toString());
+	}
+	
+	@Test
+	public void testValidNames() {
+		assertTrue(BeanAttributeRenderer.isValidName("data-x"));
+		assertTrue(BeanAttributeRenderer.isValidName("aria-label"));
+		assertTrue(BeanAttributeRenderer.isValidName("xml:lang"));
+		assertFalse(BeanAttributeRenderer.isValidName(""));
+		assertFalse(BeanAttributeRenderer.isValidName("a b"));
+		assertFalse(BeanAttributeRenderer.isValidName("a\tb"));
+		assertFalse(BeanAttributeRenderer.isValidName("a=b"));
+		assertFalse(BeanAttributeRenderer.isValidName("a'"));
+		assertFalse(BeanAttributeRenderer.isValidName("a/"));
+	}
+	
+	@Test
+	public void testRepeatedNameIsWrittenOnceAmongManyNames() throws Exception {
+		AttributeSource source = new AttributeSource() {
+			public void visitAttributes(Visitor visitor) {
+				for(int i=0; i<100; i++) {
+					visitor.attribute("data-" + i, "1");
+				}
+				visitor.attribute("data-99", "2");
+				visitor.attribute("data-0", "2");
+			}
+		};
+		
+		StringBuilder out = new StringBuilder();
+		renderer.renderAttributes(source, out);
+		String html = out.toString();
+		assertTrue(html, html.startsWith(" data-0=\"2\" data-1=\"1\""));
+		assertTrue(html, html.endsWith(" data-99=\"2\""));
+		assertEquals(100, html.split(" data-").length - 1);
+	}
+}
@@ -0,0 +1,240 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.ProcessingContext;
+import org.thymeleaf.processor.ProcessorResult;
+import org.thymeleaf.standard.expression.IStandardExpression;
+import org.thymeleaf.standard.expression.StandardExpressions;
+
+public class BeanDialectTests {
+	
+	public static class LinkBean {
+		public String getHref() { return "http://www.example.com"; }
+		public String getText() { return "Example"; }
+		public boolean isDisabled() { return true; }
+	}
+	
+	static TemplateEngine engine(BeanDialect dialect) {
+		TemplateEngine engine = new TemplateEngine();
+		engine.setTemplateResolver(new StringTemplateResolver());
+		engine.addDialect(dialect);
+		return engine;
+	}
+	
+	static String process(TemplateEngine engine, String template, String name, Object bean) {
+		Context context = new Context();
+		context.setVariable(name, bean);
+		return engine.process(template, context);
+	}
+	
+	@Test
+	public void testStandaloneProcessing() {
+		String html = process(engine(new BeanDialect()), "<a bean:use=\"${link}\">Hello!</a>", "link", new LinkBean());
+		assertEquals("<a disabled=\"disabled\" href=\"http://www.example.com\">Example</a>", html);
+	}
+	
+	@Test
+	public void testGeneratedModeGivesSameOutput() {
+		String template = "<div><a bean:use=\"${link}\">Hello!</a><a bean:use=\"${link}\" title=\"static\">Hello!</a></div>";
+		String reflective = process(engine(new BeanDialect()), template, "link", new LinkBean());
+		String generated = process(engine(new BeanDialect(ProcessingMode.GENERATED)), template, "link", new LinkBean());
+		assertEquals(reflective, generated);
+	}
+	
+	@Test
+	public void testMapProcessing() {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("href", "http://www.example.com");
+		map.put("utext", "<b>Bold</b>");
+		
+		String html = process(engine(new BeanDialect()), "<a bean:use=\"${link}\">Hello!</a>", "link", map);
+		assertEquals("<a href=\"http://www.example.com\"><b>Bold</b></a>", html);
+	}
+	
+	@Test
+	public void testAttributeSourceProcessing() {
+		AttributeSource source = new AttributeSource() {
+			public void visitAttributes(Visitor visitor) {
+				visitor.attribute("href", "http://www.example.com");
+				visitor.attribute("title", "");
+				visitor.attribute("text", "Example");
+			}
+		};
+		
+		String html = process(engine(new BeanDialect()), "<a title=\"static\" bean:use=\"${link}\">Hello!</a>", "link", source);
+		assertEquals("<a href=\"http://www.example.com\">Example</a>", html);
+	}
+	
+	@Test
+	public void testEach() {
+		String template = "<ul><li bean:each=\"${links}\">Hello!</li></ul>";
+		Object links = Arrays.asList(new LinkBean(), null, new LinkBean());
+		String expected = "<ul><li disabled=\"disabled\" href=\"http://www.example.com\">Example</li><li>Hello!</li><li disabled=\"disabled\" href=\"http://www.example.com\">Example</li></ul>";
+		
+		assertEquals(expected, process(engine(new BeanDialect()), template, "links", links));
+		assertEquals(expected, process(engine(new BeanDialect(ProcessingMode.GENERATED)), template, "links", links));
+	}
+	
+	@Test
+	public void testEachWithIterationVariable() {
+		String template = "<ul>\n  <li bean:each=\"link : ${links}\"><span th:text=\"${link.title}\">x</span></li>\n</ul>";
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("title", "Map");
+		
+		String html = process(engine(new BeanDialect()), template, "links", new Object[] { map, map });
+		assertEquals("<ul>\n  <li title=\"Map\"><span>Map</span></li>\n  <li title=\"Map\"><span>Map</span></li>\n</ul>", html);
+	}
+	
+	@Test
+	public void testEachWithNoBeans() {
+		String html = process(engine(new BeanDialect()), "<ul><li bean:each=\"${links}\">Hello!</li></ul>", "links", null);
+		assertEquals("<ul></ul>", html);
+	}
+	
+	@Test
+	public void testOnlyAndExcept() {
+		String template = "<div><a bean:use=\"${link}\" bean:only=\"href, text\">Hello!</a><a bean:use=\"${link}\" bean:except=\"disabled\">Hello!</a></div>";
+		String expected = "<div><a href=\"http://www.example.com\">Example</a><a href=\"http://www.example.com\">Example</a></div>";
+		
+		assertEquals(expected, process(engine(new BeanDialect()), template, "link", new LinkBean()));
+		assertEquals(expected, process(engine(new BeanDialect(ProcessingMode.GENERATED)), template, "link", new LinkBean()));
+	}
+	
+	@Test
+	public void testEachWithOnly() {
+		String template = "<ul><li bean:each=\"${links}\" bean:only=\"disabled\">Hello!</li></ul>";
+		assertEquals("<ul><li disabled=\"disabled\">Hello!</li></ul>", process(engine(new BeanDialect()), template, "links", new Object[] { new LinkBean() }));
+	}
+	
+	@Test
+	public void testMergedClass() {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("class", Arrays.asList("card", "featured"));
+		map.put("title", "");
+		
+		BeanDialect dialect = new BeanDialect();
+		dialect.setMergedAttributes("class", "title");
+		String template = "<div class=\"card grid\" title=\"static\" bean:use=\"${bean}\"></div>";
+		
+		assertEquals("<div class=\"card grid featured\" title=\"static\"></div>", process(engine(dialect), template, "bean", map));
+		assertEquals("<div class=\"card featured\"></div>", process(engine(new BeanDialect()), template, "bean", map));
+	}
+	
+	@Test
+	public void testParsedExpressionsAreCached() {
+		ExpressionCache cache = new ExpressionCache(1);
+		TemplateEngine engine = engine(new BeanDialect());
+		engine.initialize();
+		
+		Configuration configuration = engine.getConfiguration();
+		IStandardExpression expression = StandardExpressions.getExpressionParser(configuration)
+				.parseExpression(configuration, new ProcessingContext(new Context()), "${a}");
+		
+		assertNull(cache.get(configuration, "${a}"));
+		cache.put(configuration, "${a}", expression);
+		cache.put(configuration, "${b}", expression);
+		cache.put(configuration, "${__${a}__}", expression);
+		assertEquals(1, cache.size());
+		assertSame(expression, cache.get(configuration, "${a}"));
+		assertNull(cache.get(new Configuration(), "${a}"));
+		assertFalse(ExpressionCache.isCacheable("${__${a}__}"));
+	}
+	
+	@Test
+	public void testContextRootIsLazy() {
+		final String[] root = new String[1];
+		BeanDialect dialect = new BeanDialect() {
+			@Override
+			public java.util.Set<org.thymeleaf.processor.IProcessor> getProcessors() {
+				return java.util.Collections.<org.thymeleaf.processor.IProcessor>singleton(new BeanProcessor() {
+					@Override
+					protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+						// A standalone context cannot resolve @{'/'}, so this would throw if it were evaluated eagerly.
+						root[0] = data.evaluatedAttributeValueString;
+						return super.doProcess(arguments, data);
+					}
+				});
+			}
+		};
+		
+		process(engine(dialect), "<a bean:use=\"${link}\">Hello!</a>", "link", "x");
+		assertEquals("x", root[0]);
+	}
+	
+	@Test
+	public void testContextRootIsWorkedOutOncePerExecution() {
+		final int[] evaluations = new int[1];
+		final java.util.List<String> roots = new java.util.ArrayList<String>();
+		BeanDialect dialect = new BeanDialect() {
+			@Override
+			public java.util.Set<org.thymeleaf.processor.IProcessor> getProcessors() {
+				return java.util.Collections.<org.thymeleaf.processor.IProcessor>singleton(new BeanProcessor() {
+					@Override
+					protected ProcessorResult doProcess(Arguments arguments, AttributeData data) {
+						roots.add(data.getContextRoot());
+						return super.doProcess(arguments, data);
+					}
+					
+					@Override
+					protected Object parseExpression(Arguments arguments, String expressionString) {
+						if("@{'/'}".equals(expressionString)) {
+							evaluations[0]++;
+							return "/root" + evaluations[0] + "/";
+						}
+						return super.parseExpression(arguments, expressionString);
+					}
+				});
+			}
+		};
+		
+		TemplateEngine engine = engine(dialect);
+		String template = "<div><a bean:use=\"${link}\">1</a><a bean:use=\"${link}\">2</a></div>";
+		process(engine, template, "link", "x");
+		assertEquals(1, evaluations[0]);
+		process(engine, template, "link", "x");
+		assertEquals(2, evaluations[0]);
+		assertEquals(Arrays.asList("/root1/", "/root1/", "/root2/", "/root2/"), roots);
+	}
+	
+	public static class CountingBean {
+		int calls;
+		public String getHref() { calls++; return "/home"; }
+	}
+	
+	@Test
+	public void testBeanIsReadOncePerExecution() {
+		BeanDialect dialect = new BeanDialect(ProcessingMode.GENERATED);
+		dialect.setDeduplicateBeans(true);
+		TemplateEngine engine = engine(dialect);
+		CountingBean bean = new CountingBean();
+		String template = "<div><a bean:use=\"${link}\">Header</a><a bean:use=\"${link}\">Footer</a></div>";
+		
+		String html = process(engine, template, "link", bean);
+		assertEquals("<div><a href=\"/home\">Header</a><a href=\"/home\">Footer</a></div>", html);
+		assertEquals(1, bean.calls);
+		assertEquals(1, dialect.getRecomputationsSaved());
+		
+		process(engine, template, "link", bean);
+		assertEquals(2, bean.calls);
+		assertEquals(2, dialect.getRecomputationsSaved());
+	}
+	
+	@Test
+	public void testBeansAreNotDeduplicatedByDefault() {
+		BeanDialect dialect = new BeanDialect();
+		CountingBean bean = new CountingBean();
+		process(engine(dialect), "<div><a bean:use=\"${link}\">Header</a><a bean:use=\"${link}\">Footer</a></div>", "link", bean);
+		assertEquals(2, bean.calls);
+		assertEquals(0, dialect.getRecomputationsSaved());
+	}
+}
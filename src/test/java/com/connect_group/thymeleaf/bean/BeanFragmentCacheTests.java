@@ -0,0 +1,316 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Text;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.standard.StandardDialect;
+
+public class BeanFragmentCacheTests {
+	
+	private static final String TEMPLATE = "<div><nav bean:use=\"${menu}\" bean:cache=\"\"><span th:text=\"${menu.label()}\">Title</span></nav></div>";
+	
+	public static class Menu implements VersionedBean {
+		int calls;
+		Object version = "1";
+		
+		public String getCssClass() { calls++; return "menu"; }
+		public String label() { calls++; return "Home"; }
+		
+		public Object attributeVersion() {
+			return version;
+		}
+	}
+	
+	public static class PlainMenu {
+		int calls;
+		
+		public String getCssClass() { calls++; return "menu"; }
+		public String label() { calls++; return "Home"; }
+	}
+	
+	@Test
+	public void testHitSkipsGettersAndNestedProcessors() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		Menu menu = new Menu();
+		
+		String first = BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		assertEquals("<div><nav class=\"menu\"><span>Home</span></nav></div>", first);
+		assertEquals(2, menu.calls);
+		assertEquals(1, cache.size());
+		
+		assertEquals(first, BeanDialectTests.process(engine, TEMPLATE, "menu", menu));
+		assertEquals(2, menu.calls);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+	
+	@Test
+	public void testNewVersionIsRenderedAgain() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		Menu menu = new Menu();
+		
+		BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		menu.version = "2";
+		BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		assertEquals(4, menu.calls);
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testBeanWithoutVersionIsNotCached() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		PlainMenu menu = new PlainMenu();
+		
+		BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		String html = BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		assertEquals("<div><nav class=\"menu\"><span>Home</span></nav></div>", html);
+		assertEquals(4, menu.calls);
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testExplicitKey() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		PlainMenu menu = new PlainMenu();
+		String template = "<div><nav bean:use=\"${menu}\" bean:cache=\"'v1'\"><span th:text=\"${menu.label()}\">Title</span></nav></div>";
+		
+		BeanDialectTests.process(engine, template, "menu", menu);
+		String html = BeanDialectTests.process(engine, template, "menu", menu);
+		assertEquals("<div><nav class=\"menu\"><span>Home</span></nav></div>", html);
+		assertEquals(2, menu.calls);
+	}
+	
+	@Test
+	public void testWithoutCacheAttributeIsRemoved() {
+		Menu menu = new Menu();
+		String html = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect()), TEMPLATE, "menu", menu);
+		assertEquals("<div><nav class=\"menu\"><span>Home</span></nav></div>", html);
+	}
+	
+	@Test
+	public void testElementsOnOneLineAreCachedApart() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		Menu menu = new Menu();
+		String template = "<div><nav bean:use=\"${menu}\" bean:cache=\"\"><span th:text=\"${menu.label()}\">Title</span></nav>"
+				+ "<nav bean:use=\"${menu}\" bean:cache=\"\"><b>Footer</b></nav></div>";
+		String expected = "<div><nav class=\"menu\"><span>Home</span></nav><nav class=\"menu\"><b>Footer</b></nav></div>";
+		
+		assertEquals(expected, BeanDialectTests.process(engine, template, "menu", menu));
+		assertEquals(2, cache.size());
+		assertEquals(expected, BeanDialectTests.process(engine, template, "menu", menu));
+		assertEquals(2, cache.getHits());
+	}
+	
+	@Test
+	public void testSameSourceIsSharedBetweenTemplates() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		Menu menu = new Menu();
+		
+		BeanDialectTests.process(engine, TEMPLATE, "menu", menu);
+		String html = BeanDialectTests.process(engine, "<section>" + TEMPLATE + "</section>", "menu", menu);
+		assertEquals("<section><div><nav class=\"menu\"><span>Home</span></nav></div></section>", html);
+		assertEquals(1, cache.getHits());
+	}
+	
+	@Test
+	public void testIterationIsRejected() {
+		assertRejected("<ul><li th:each=\"m : ${menus}\" bean:use=\"${m}\" bean:cache=\"\">Item</li></ul>", "th:each");
+	}
+	
+	@Test
+	public void testConditionalsAreRejected() {
+		assertRejected("<div><nav th:if=\"${menu!=null}\" bean:use=\"${menu}\" bean:cache=\"\">Menu</nav></div>", "th:if");
+		assertRejected("<div><nav th:unless=\"${menu==null}\" bean:use=\"${menu}\" bean:cache=\"\">Menu</nav></div>", "th:unless");
+	}
+	
+	@Test
+	public void testSwitchCasesAreRejected() {
+		assertRejected("<div th:switch=\"${menus.size()}\"><nav th:case=\"1\" bean:use=\"${menus[0]}\" bean:cache=\"\">Menu</nav></div>", "th:case");
+		assertRejected("<div data-th-switch=\"${menus.size()}\"><nav data-th-case=\"1\" bean:use=\"${menus[0]}\" bean:cache=\"\">Menu</nav></div>", "data-th-case");
+	}
+	
+	@Test
+	public void testRejectionFollowsTheStandardDialectPrefix() {
+		BeanDialect dialect = new BeanDialect();
+		dialect.setFragmentCache(new BeanFragmentCache());
+		TemplateEngine engine = new TemplateEngine();
+		engine.setTemplateResolver(new StringTemplateResolver());
+		engine.clearDialects();
+		engine.addDialect("std", new StandardDialect());
+		engine.addDialect(dialect);
+		try {
+			BeanDialectTests.process(engine, "<ul><li std:each=\"m : ${menus}\" bean:use=\"${m}\" bean:cache=\"\">Item</li></ul>", "menus", Arrays.asList(new Menu()));
+			fail("Expected bean:cache with std:each to be rejected");
+		} catch (TemplateProcessingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("bean:cache cannot be used with std:each"));
+		}
+	}
+	
+	@Test
+	public void testCacheOnChildOfIterationIsKeptPerBean() {
+		BeanFragmentCache cache = new BeanFragmentCache();
+		TemplateEngine engine = engine(cache);
+		Menu first = new Menu();
+		Menu second = new Menu();
+		second.version = "2";
+		String template = "<ul><li th:each=\"m : ${menus}\"><nav bean:use=\"${m}\" bean:cache=\"\">Item</nav></li></ul>";
+		
+		BeanDialectTests.process(engine, template, "menus", Arrays.asList(first, second));
+		assertEquals(2, cache.size());
+		BeanDialectTests.process(engine, template, "menus", Arrays.asList(first, second));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, first.calls);
+		assertEquals(1, second.calls);
+	}
+	
+	@Test
+	public void testSourceIsWorkedOutOncePerParsedElement() {
+		BeanCacheProcessor processor = new BeanCacheProcessor(new BeanFragmentCache(), null);
+		Element parsed = new Element("nav");
+		parsed.setAttribute("bean:cache", "");
+		parsed.addChild(new Text("Menu"));
+		String source = processor.sourceOf(parsed, "bean:cache");
+		
+		Element duplicate = (Element) parsed.cloneNode(null, false);
+		duplicate.clearChildren();
+		duplicate.addChild(new Text("Processed"));
+		assertSame(source, processor.sourceOf(duplicate, "bean:cache"));
+		
+		Element reparsed = new Element("nav");
+		reparsed.setAttribute("bean:cache", "");
+		reparsed.addChild(new Text("Menu"));
+		assertNotSame(source, processor.sourceOf(reparsed, "bean:cache"));
+		assertEquals(source, processor.sourceOf(reparsed, "bean:cache"));
+	}
+	
+	@Test
+	public void testTextLikeMarkupHasItsOwnSource() {
+		Element markup = new Element("nav");
+		Element bold = new Element("b");
+		bold.addChild(new Text("x"));
+		markup.addChild(bold);
+		
+		Element text = new Element("nav");
+		text.addChild(new Text("<b>x</>"));
+		
+		assertFalse(BeanCacheProcessor.sourceOf(markup).equals(BeanCacheProcessor.sourceOf(text)));
+		assertEquals(BeanCacheProcessor.sourceOf(markup), BeanCacheProcessor.sourceOf((Element)markup.cloneNode(null, false)));
+	}
+	
+	private static void assertRejected(String template, String attribute) {
+		try {
+			BeanDialectTests.process(engine(new BeanFragmentCache()), template, "menus", Arrays.asList(new Menu()));
+			fail("Expected bean:cache with " + attribute + " to be rejected");
+		} catch (TemplateProcessingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("bean:cache cannot be used with " + attribute));
+		}
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		BeanFragmentCache cache = new BeanFragmentCache(2, BeanFragmentCache.DEFAULT_MAXIMUM_BYTES, 0, TimeUnit.SECONDS);
+		cache.put("a", element("a"));
+		cache.put("b", element("b"));
+		assertNotNull(cache.get("a"));
+		cache.put("c", element("c"));
+		
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	@Test
+	public void testSizeInBytesIsBounded() {
+		Element element = element("a");
+		long size = BeanFragmentCache.sizeOf(element);
+		BeanFragmentCache cache = new BeanFragmentCache(100, size * 2, 0, TimeUnit.SECONDS);
+		cache.put("a", element);
+		cache.put("b", element("b"));
+		cache.put("c", element("c"));
+		
+		assertEquals(2, cache.size());
+		assertEquals(size * 2, cache.getBytes());
+		assertNull(cache.get("a"));
+		
+		Element large = element("d");
+		large.addChild(new Text(new String(new char[(int)size])));
+		cache.put("d", large);
+		assertNull(cache.get("d"));
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testKeySizeIsCounted() {
+		Element element = element("a");
+		long size = BeanFragmentCache.sizeOf(element);
+		String source = BeanCacheProcessor.sourceOf(element);
+		BeanFragmentCache cache = new BeanFragmentCache(100, size * 3, 0, TimeUnit.SECONDS);
+		cache.put(source, BeanFragmentCache.sizeOf(source), element);
+		assertEquals(size + BeanFragmentCache.sizeOf(source), cache.getBytes());
+		
+		String large = new String(new char[(int)size * 2]);
+		cache.put(large, BeanFragmentCache.sizeOf(large), element("b"));
+		assertNull(cache.get(large));
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void testStoredCopyKeepsOnlyMarkup() {
+		Element element = element("a & b");
+		element.setNodeLocalVariable("request", new Object());
+		element.setNodeProperty("request", new Object());
+		Element child = new Element("br", Element.RepresentationInTemplate.STANDALONE);
+		child.setAttribute("hidden", true, null);
+		child.setNodeLocalVariable("request", new Object());
+		element.addChild(child);
+		element.addChild(new Comment("note"));
+		
+		Element copy = BeanCacheProcessor.markupOf(element);
+		assertEquals(BeanCacheProcessor.sourceOf(element), BeanCacheProcessor.sourceOf(copy));
+		assertFalse(copy.hasNodeLocalVariables());
+		assertFalse(copy.hasNodeProperty("request"));
+		Element copiedChild = (Element) copy.getChildren().get(1);
+		assertFalse(copiedChild.hasNodeLocalVariables());
+		assertEquals(Element.RepresentationInTemplate.STANDALONE, copiedChild.getRepresentationInTemplate());
+	}
+	
+	@Test
+	public void testEntriesExpire() throws InterruptedException {
+		BeanFragmentCache cache = new BeanFragmentCache(10, BeanFragmentCache.DEFAULT_MAXIMUM_BYTES, 50, TimeUnit.MILLISECONDS);
+		cache.put("a", element("a"));
+		assertNotNull(cache.get("a"));
+		
+		Thread.sleep(100);
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.getExpirations());
+		assertEquals(0, cache.getBytes());
+	}
+	
+	private static TemplateEngine engine(BeanFragmentCache cache) {
+		BeanDialect dialect = new BeanDialect();
+		dialect.setFragmentCache(cache);
+		return BeanDialectTests.engine(dialect);
+	}
+	
+	private static Element element(String text) {
+		Element element = new Element("p");
+		element.setAttribute("class", "x");
+		element.addChild(new Text(text));
+		return element;
+	}
+}
@@ -0,0 +1,108 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.thymeleaf.TemplateEngine;
+
+public class BeanMetricsTests {
+	
+	private static final String TEMPLATE = "<div><a bean:use=\"${link}\">1</a><a bean:use=\"${link}\">2</a></div>";
+	
+	private BeanMetrics render(ProcessingMode mode) {
+		BeanMetrics metrics = new BeanMetrics();
+		BeanDialect dialect = new BeanDialect(mode);
+		dialect.setMetricsListener(metrics);
+		
+		TemplateEngine engine = BeanDialectTests.engine(dialect);
+		BeanDialectTests.process(engine, TEMPLATE, "link", new BeanDialectTests.LinkBean());
+		return metrics;
+	}
+	
+	@Test
+	public void testReflectiveCounts() {
+		BeanMetrics metrics = render(ProcessingMode.REFLECTIVE);
+		
+		assertEquals(2, metrics.getInvocations());
+		assertEquals(4, metrics.getAttributesWritten());
+		assertEquals(2, metrics.getExpressionEvaluations());
+		assertEquals(1, metrics.getExpressionCacheMisses());
+		assertEquals(1, metrics.getExpressionCacheHits());
+		assertEquals(1, metrics.getPlanCacheMisses());
+		assertEquals(1, metrics.getPlanCacheHits());
+		assertEquals(0, metrics.getWriterCacheHits() + metrics.getWriterCacheMisses());
+		assertTrue(metrics.getTotalExtractionTimeNanos() > 0);
+		
+		String[] classes = metrics.getBeanClasses();
+		assertEquals(1, classes.length);
+		assertTrue(classes[0].startsWith(BeanDialectTests.LinkBean.class.getName() + " invocations=2 "));
+	}
+	
+	@Test
+	public void testGeneratedCounts() {
+		BeanMetrics metrics = render(ProcessingMode.GENERATED);
+		
+		assertEquals(2, metrics.getInvocations());
+		assertEquals(4, metrics.getAttributesWritten());
+		assertEquals(1, metrics.getWriterCacheMisses());
+		assertEquals(1, metrics.getWriterCacheHits());
+		assertEquals(0, metrics.getTotalExtractionTimeNanos());
+	}
+	
+	@Test
+	public void testHistogram() {
+		assertEquals(0, BeanMetrics.bucket(0));
+		assertEquals(0, BeanMetrics.bucket(1));
+		assertEquals(1, BeanMetrics.bucket(2));
+		assertEquals(10, BeanMetrics.bucket(1024));
+		
+		BeanMetrics metrics = new BeanMetrics();
+		for(int i=0; i<99; i++) {
+			metrics.beanProcessed(String.class, 0, 100, 1);
+		}
+		metrics.beanProcessed(String.class, 0, 5000, 1);
+		
+		assertEquals(127, metrics.getProcessingLatencyPercentileNanos(50));
+		assertEquals(127, metrics.getProcessingLatencyPercentileNanos(99));
+		assertEquals(8191, metrics.getProcessingLatencyPercentileNanos(100));
+		assertEquals(99, metrics.getProcessingLatencyHistogram()[6]);
+		
+		metrics.reset();
+		assertEquals(0, metrics.getInvocations());
+		assertEquals(0, metrics.getProcessingLatencyPercentileNanos(50));
+	}
+	
+	@Test
+	public void testJmxRegistration() throws Exception {
+		BeanMetrics metrics = new BeanMetrics();
+		metrics.beanProcessed(String.class, 10, 20, 3);
+		
+		ObjectName name = metrics.register("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(Long.valueOf(1), server.getAttribute(name, "Invocations"));
+			assertEquals(Long.valueOf(3), server.getAttribute(name, "AttributesWritten"));
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+	
+	@Test
+	public void testUnregistersFromTheServerItRegisteredWith() throws Exception {
+		BeanMetrics metrics = new BeanMetrics();
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		ObjectName name = new ObjectName("com.connect_group.thymeleaf.bean:type=BeanMetrics,name=private");
+		
+		metrics.register(server, name);
+		assertTrue(server.isRegistered(name));
+		metrics.unregister();
+		assertFalse(server.isRegistered(name));
+	}
+}
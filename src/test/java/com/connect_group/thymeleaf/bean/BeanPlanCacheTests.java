@@ -0,0 +1,114 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BeanPlanCacheTests {
+	
+	public static class Product {
+		public String getTitle() { return "Product"; }
+	}
+	
+	// Named as CGLIB names its subclasses.
+	public static class Product$$EnhancerByCGLIB$$1234 extends Product {
+		public String getCallbacks() { return "proxy internals"; }
+	}
+	
+	public static class Other {
+		public String getAlt() { return "Other"; }
+	}
+	
+	public static class Another {
+		public String getHref() { return "/another"; }
+	}
+	
+	@Test
+	public void testProxyClassSharesPlanOfUserClass() {
+		BeanPlanCache cache = new BeanPlanCache();
+		
+		assertSame(Product.class, BeanPlanCache.getUserClass(Product$$EnhancerByCGLIB$$1234.class));
+		assertSame(cache.get(Product.class), cache.get(Product$$EnhancerByCGLIB$$1234.class));
+		
+		Map<String,String> map = new BeanAttributeReader(BeanAttributeBinders.NONE, new BeanSettings()).getProperties(new Product$$EnhancerByCGLIB$$1234());
+		assertEquals(1, map.size());
+		assertEquals("Product", map.get("title"));
+	}
+	
+	@Test
+	public void testAnonymousClassIsNotNormalised() {
+		Object bean = new Product() {
+			@SuppressWarnings("unused")
+			public String getAlt() { return "alt"; }
+		};
+		assertSame(bean.getClass(), BeanPlanCache.getUserClass(bean.getClass()));
+	}
+	
+	@Test
+	public void testEldestPlanIsEvicted() {
+		final int[] evictions = new int[1];
+		BeanMetricsListener metrics = new BeanMetrics() {
+			@Override
+			public void cacheEvicted(String cache) {
+				evictions[0]++;
+			}
+		};
+		BeanPlanCache cache = new BeanPlanCache(metrics, 2);
+		
+		BeanPlan product = cache.get(Product.class);
+		cache.get(Other.class);
+		cache.get(Another.class);
+		
+		assertEquals(2, cache.size());
+		assertEquals(1, evictions[0]);
+		assertNotSame(product, cache.get(Product.class));
+		assertSame(cache.get(Another.class), cache.get(Another.class));
+	}
+	
+	@Test
+	public void testSharedClassDoesNotPinTheCachesLoader() throws Exception {
+		WeakReference<ClassLoader> loader = useCacheFromThrowawayLoader(Product.class);
+		for(int i=0; i<50 && loader.get()!=null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("The loader of the cache is still reachable", loader.get());
+	}
+	
+	/**
+	 * Load this library afresh, as a web application would, and read a plan of a class from a loader it cannot see.
+	 */
+	private static WeakReference<ClassLoader> useCacheFromThrowawayLoader(Class<?> sharedClass) throws Exception {
+		URL library = BeanPlanCache.class.getProtectionDomain().getCodeSource().getLocation();
+		URLClassLoader loader = new URLClassLoader(new URL[] { library }, null);
+		
+		Class<?> cacheClass = loader.loadClass(BeanPlanCache.class.getName());
+		assertNotSame(BeanPlanCache.class, cacheClass);
+		Constructor<?> constructor = cacheClass.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		Object cache = constructor.newInstance();
+		Method get = cacheClass.getDeclaredMethod("get", Class.class);
+		get.setAccessible(true);
+		assertNotNull(get.invoke(cache, sharedClass));
+		
+		loader.close();
+		return new WeakReference<ClassLoader>(loader);
+	}
+	
+	@Test
+	public void testPlansOfSharedClassesAreEvicted() {
+		BeanPlanCache cache = new BeanPlanCache(BeanMetricsListener.NONE, 1);
+		BeanPlan string = cache.get(String.class);
+		assertSame(string, cache.get(String.class));
+		cache.get(Product.class);
+		assertEquals(1, cache.size());
+		assertNotSame(string, cache.get(String.class));
+	}
+}
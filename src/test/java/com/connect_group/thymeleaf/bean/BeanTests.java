@@ -2,6 +2,7 @@ package com.connect_group.thymeleaf.bean;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -205,6 +206,22 @@ public class BeanTests {
 		assertEquals("data-x-x-x", BeanProcessor.uncamel("dataXXX"));
 	}
 	
+	@Test
+	public void testDataAttributeNamesAreShared() {
+		assertEquals("data-mobile-url", AttributeNames.dataAttributeName("mobile-url"));
+		assertSame(AttributeNames.dataAttributeName("mobile-url"), AttributeNames.dataAttributeName(new String("mobile-url")));
+		assertSame(BeanProcessor.processName("dataMobileUrl"), BeanProcessor.processName("dataMobileUrl"));
+		
+		String longKey = new String(new char[AttributeNames.MAXIMUM_CACHED_NAME_LENGTH + 1]).replace('\0', 'x');
+		assertNotSame(AttributeNames.dataAttributeName(longKey), AttributeNames.dataAttributeName(longKey));
+		
+		for(int i=0; i<AttributeNames.MAXIMUM_CACHED_NAMES * 2; i++) {
+			assertEquals("data-key" + i, AttributeNames.dataAttributeName("key" + i));
+		}
+		assertEquals(AttributeNames.MAXIMUM_CACHED_NAMES, AttributeNames.cachedDataAttributeNames());
+		assertSame(AttributeNames.dataAttributeName("mobile-url"), AttributeNames.dataAttributeName("mobile-url"));
+	}
+	
 	@Test
 	public void testIsUppercase() {
 		String upper="ABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -236,4 +253,173 @@ public class BeanTests {
 		assertFalse(BeanProcessor.isDataAttribute("base"));
 	}
 	
-}
\ No newline at end of file
+	@Test
+	public void testPlanIsBuiltOncePerClass() {
+		BeanPlanCache cache = new BeanPlanCache();
+		Object bean = new Object() {
+			public String getTitle() { return "thetitle"; }
+			public Map<String,String> getData() { return new HashMap<String,String>(); }
+			public String getDataMobileUrl() { return "the url"; }
+		};
+		
+		BeanPlan plan = cache.get(bean.getClass());
+		assertSame(plan, cache.get(bean.getClass()));
+		assertEquals(1, cache.size());
+		assertEquals(3, plan.properties.length);
+		
+		for(PropertyPlan property : plan.properties) {
+			if("data".equals(property.propertyName)) {
+				assertTrue(property.dataMap);
+			} else if("dataMobileUrl".equals(property.propertyName)) {
+				assertEquals("data-mobile-url", property.attributeName);
+				assertFalse(property.dataMap);
+			}
+		}
+	}
+	
+	@Test
+	public void testBeanWithWriteOnlyDataProperty() {
+		Object bean = new Object() {
+			public void setData(Map<String,String> data) { }
+			public String getTitle() { return "thetitle"; }
+		};
+		
+		Map<String,String> map = processor.getProperties(bean);
+		
+		assertEquals(1, map.size());
+		assertEquals("thetitle", map.get("title"));
+	}
+	
+	public static class BoundBean {
+		public String getTitle() { return "introspected"; }
+	}
+	
+	@Test
+	public void testBinderIsUsedInPreferenceToIntrospection() {
+		BeanAttributeBinder<BoundBean> binder = new AbstractBeanAttributeBinder<BoundBean>(BoundBean.class) {
+			public void bind(BoundBean bean, Map<String,String> attributes) {
+				property(attributes, "title", "bound", "title");
+			}
+		};
+		BeanProcessor bound = new BeanProcessor(ProcessingMode.GENERATED, new BeanAttributeBinders(Arrays.asList(binder)));
+		
+		assertEquals("bound", bound.getProperties(new BoundBean()).get("title"));
+		assertNull(bound.getWriter(new BoundBean()));
+		assertEquals("introspected", processor.getProperties(new BoundBean()).get("title"));
+	}
+	
+	@ImmutableBean
+	public static class ImmutableBoundBean extends BoundBean {
+	}
+	
+	@Test
+	public void testBoundClassIsNeverIntrospected() {
+		BeanAttributeBinder<ImmutableBoundBean> binder = new AbstractBeanAttributeBinder<ImmutableBoundBean>(ImmutableBoundBean.class) {
+			public void bind(ImmutableBoundBean bean, Map<String,String> attributes) {
+				property(attributes, "title", "bound", "title");
+			}
+		};
+		final List<String> accessed = new ArrayList<String>();
+		BeanDialect dialect = new BeanDialect(ProcessingMode.GENERATED);
+		dialect.setMetricsListener(new BeanMetricsListener() {
+			public boolean isEnabled() { return true; }
+			public void expressionEvaluated(long nanos) { }
+			public void beanProcessed(Class<?> beanClass, long extractionNanos, long applicationNanos, int attributesWritten) { }
+			public void cacheAccessed(String cache, boolean hit) { accessed.add(cache); }
+		});
+		BeanProcessor bound = new BeanProcessor(dialect, new BeanAttributeBinders(Arrays.asList(binder)));
+		
+		bound.prepare(ImmutableBoundBean.class);
+		assertNull(bound.getWriter(new ImmutableBoundBean()));
+		assertEquals("bound", bound.getProperties(new ImmutableBoundBean()).get("title"));
+		assertFalse(accessed.contains(BeanMetricsListener.PLAN_CACHE));
+		
+		BeanSettings settings = new BeanSettings();
+		settings.setAttributeMemo(new BeanAttributeMemo());
+		BeanAttributeReader reader = new BeanAttributeReader(new BeanAttributeBinders(Arrays.asList(binder)), settings);
+		assertTrue(reader.isMemoized(new ImmutableBoundBean()));
+		assertEquals("bound", reader.getProperties(new ImmutableBoundBean()).get("title"));
+		reader.prepare(ImmutableBoundBean.class);
+		assertEquals(0, reader.getPlanCache().size());
+	}
+	
+	@Test
+	public void testEmptyMapIsNotIntrospected() {
+		Map<String,String> map = processor.getProperties(new HashMap<String,String>());
+		assertEquals(0, map.size());
+	}
+	
+	@Test
+	public void testAttributeSource() {
+		AttributeSource source = new AttributeSource() {
+			public void visitAttributes(Visitor visitor) {
+				visitor.attribute("href", "http://www.example.com");
+				visitor.attribute("text", "Example");
+			}
+		};
+		
+		Map<String,String> map = processor.getProperties(source);
+		assertEquals(2, map.size());
+		assertEquals("http://www.example.com", map.get("href"));
+		assertEquals("Example", map.get("text"));
+	}
+	
+	
+	@Test
+	public void testFilteredGettersAreNotCalled() {
+		final int[] calls = new int[1];
+		Object bean = new Object() {
+			public String getHref() { return "/home"; }
+			public String getCssClass() { return "link"; }
+			public String getTitle() { calls[0]++; return "expensive"; }
+		};
+		BeanAttributeReader reader = new BeanAttributeReader(BeanAttributeBinders.NONE, new BeanSettings());
+		
+		Map<String,String> map = reader.getProperties(bean, AttributeFilter.compile("href,class", null));
+		assertEquals(2, map.size());
+		assertEquals("/home", map.get("href"));
+		assertEquals("link", map.get("class"));
+		
+		map = reader.getProperties(bean, AttributeFilter.compile(null, "title, cssClass"));
+		assertEquals(1, map.size());
+		assertEquals("/home", map.get("href"));
+		assertEquals(0, calls[0]);
+	}
+	
+	public static class ExpensiveBean {
+		int calls;
+		public String getHref() { return "/home"; }
+		public String getTitle() { calls++; return "expensive"; }
+	}
+	
+	@Test
+	public void testFilteredGettersAreNotCalledByABinder() {
+		BeanAttributeBinder<ExpensiveBean> binder = new AbstractBeanAttributeBinder<ExpensiveBean>(ExpensiveBean.class) {
+			public void bind(ExpensiveBean bean, Map<String,String> attributes) {
+				property(attributes, "href", bean.getHref(), "href");
+				property(attributes, "title", bean.getTitle(), "title");
+			}
+		};
+		BeanAttributeReader reader = new BeanAttributeReader(new BeanAttributeBinders(Arrays.asList(binder)), new BeanSettings());
+		ExpensiveBean bean = new ExpensiveBean();
+		
+		Map<String,String> map = reader.getProperties(bean, AttributeFilter.compile("href", null));
+		assertEquals(1, map.size());
+		assertEquals("/home", map.get("href"));
+		assertEquals(0, bean.calls);
+		
+		reader.getProperties(bean);
+		assertEquals(1, bean.calls);
+	}
+	
+	@Test
+	public void testMapIsFilteredByAttributeName() {
+		Map<String,Object> bean = new HashMap<String,Object>();
+		bean.put("href", "/home");
+		bean.put("title", "Home");
+		
+		Map<String,String> map = new BeanAttributeReader(BeanAttributeBinders.NONE, new BeanSettings()).getProperties(bean, AttributeFilter.compile("title", ""));
+		assertEquals(1, map.size());
+		assertEquals("Home", map.get("title"));
+	}
+}
@@ -0,0 +1,81 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class BeanWarmUpTests {
+	
+	public static class Link {
+		public String getHref() { return "/home"; }
+	}
+	
+	public static abstract class AbstractLink {
+		public abstract String getHref();
+	}
+	
+	@Test
+	public void testListedClassesArePrepared() {
+		final BeanMetrics metrics = new BeanMetrics();
+		BeanSettings settings = new BeanSettings();
+		settings.setMetricsListener(metrics);
+		BeanAttributeReader reader = settings.createReader(BeanAttributeBinders.NONE);
+		BeanWarmUp warmUp = new BeanWarmUp().addClasses(Link.class, BeanTests.class);
+		
+		assertEquals(2, warmUp.prepare(reader, getClass().getClassLoader()));
+		assertEquals(2, warmUp.getClassesPrepared());
+		assertEquals(0, warmUp.getClassesFailed());
+		assertTrue(warmUp.getElapsedNanos()>0);
+		assertTrue(warmUp.toString().startsWith("Prepared 2 bean classes in "));
+		assertEquals(2, metrics.getPlanCacheMisses());
+		
+		assertEquals("/home", reader.getProperties(new Link()).get("href"));
+		assertEquals(2, metrics.getPlanCacheMisses());
+		assertEquals(1, metrics.getPlanCacheHits());
+	}
+	
+	@Test
+	public void testPackageScanFindsDirectoryClasses() throws Exception {
+		Set<String> classNames = new LinkedHashSet<String>();
+		BeanWarmUp.scan(getClass().getPackage().getName(), getClass().getClassLoader(), classNames);
+		
+		assertTrue(classNames.contains(BeanWarmUpTests.class.getName()));
+		assertTrue(classNames.contains(Link.class.getName()));
+		assertTrue(classNames.contains(BeanWarmUp.class.getName()));
+	}
+	
+	@Test
+	public void testPackageScanFindsJarClasses() throws Exception {
+		Set<String> classNames = new LinkedHashSet<String>();
+		BeanWarmUp.scan("org.junit", getClass().getClassLoader(), classNames);
+		
+		assertTrue(classNames.contains(Test.class.getName()));
+	}
+	
+	@Test
+	public void testOnlyConcreteClassesAreBeans() {
+		assertTrue(BeanWarmUp.isBeanClass(Link.class));
+		assertFalse(BeanWarmUp.isBeanClass(AbstractLink.class));
+		assertFalse(BeanWarmUp.isBeanClass(Serializable.class));
+		assertFalse(BeanWarmUp.isBeanClass(ProcessingMode.class));
+		assertFalse(BeanWarmUp.isBeanClass(Test.class));
+		assertFalse(BeanWarmUp.isBeanClass(new Object() {}.getClass()));
+	}
+	
+	@Test
+	public void testDialectPreparesPackageOnInitialisation() {
+		BeanWarmUp warmUp = new BeanWarmUp().addPackages(getClass().getPackage().getName(), "com.example.missing");
+		BeanDialect dialect = new BeanDialect(ProcessingMode.GENERATED);
+		dialect.setWarmUp(warmUp);
+		
+		String html = BeanDialectTests.process(BeanDialectTests.engine(dialect), "<a bean:use=\"${link}\">Hello!</a>", "link", new Link());
+		
+		assertTrue(html.contains("href=\"/home\""));
+		assertTrue(warmUp.getClassesPrepared()>10);
+		assertEquals(0, warmUp.getClassesFailed());
+	}
+}
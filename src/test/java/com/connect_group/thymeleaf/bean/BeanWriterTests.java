@@ -0,0 +1,210 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Text;
+
+public class BeanWriterTests {
+	
+	BeanProcessor processor = new BeanProcessor(ProcessingMode.GENERATED);
+	
+	public static class LinkBean {
+		public String getHref() { return "http://www.example.com"; }
+		public String getTitle() { return ""; }
+		public boolean isDisabled() { return true; }
+		public boolean isHidden() { return false; }
+		public List<String> getCssClass() { return Arrays.asList("abc", "def"); }
+		public int[] getDataIds() { return new int[] {1, 2, 3}; }
+		public String getText() { return "link text"; }
+		public Map<String,Object> getData() {
+			Map<String,Object> map = new LinkedHashMap<String,Object>();
+			map.put("x", "y");
+			map.put("flag", Boolean.FALSE);
+			map.put("removed", "");
+			return map;
+		}
+	}
+	
+	@Test
+	public void testWriterMatchesReflectiveProcessing() {
+		LinkBean bean = new LinkBean();
+		
+		Element reflective = new Element("a");
+		reflective.setAttribute("removed", "static");
+		reflective.setAttribute("data-removed", "static");
+		processor.updateAttributes(reflective, processor.getProperties(bean));
+		
+		Element generated = new Element("a");
+		generated.setAttribute("removed", "static");
+		generated.setAttribute("data-removed", "static");
+		BeanWriter writer = processor.getWriter(bean);
+		assertNotNull(writer);
+		writer.writeAttributes(bean, generated, processor);
+		
+		assertEquals(attributes(reflective), attributes(generated));
+		assertEquals("http://www.example.com", generated.getAttributeValue("href"));
+		assertEquals("disabled", generated.getAttributeValue("disabled"));
+		assertEquals("abc def", generated.getAttributeValue("class"));
+		assertEquals("1 2 3", generated.getAttributeValue("data-ids"));
+		assertEquals("false", generated.getAttributeValue("data-flag"));
+		assertFalse(generated.hasAttribute("data-removed"));
+		assertFalse(generated.hasAttribute("text"));
+		assertEquals("link text", writer.getText(bean));
+		assertNull(writer.getUtext(bean));
+	}
+	
+	@Test
+	public void testWriterIsCachedPerClass() {
+		assertSame(processor.getWriter(new LinkBean()), processor.getWriter(new LinkBean()));
+	}
+	
+	@Test
+	public void testFallbackForAnonymousBeansAndMaps() {
+		Object bean = new Object() {
+			@SuppressWarnings("unused")
+			public String getTitle() { return "thetitle"; }
+		};
+		
+		assertNull(processor.getWriter(bean));
+		assertNull(processor.getWriter(bean));
+		assertNull(processor.getWriter(new HashMap<String,String>()));
+	}
+	
+	public static class TextAndUtextBean extends LinkBean {
+		int utextCalls;
+		public String getUtext() { utextCalls++; return "<b>unescaped</b>"; }
+	}
+	
+	/**
+	 * Ignores title, and keeps data-removed as an empty attribute rather than removing it.
+	 */
+	static class CustomRulesProcessor extends BeanProcessor {
+		CustomRulesProcessor(ProcessingMode mode) {
+			super(mode);
+		}
+		
+		@Override
+		protected boolean isIgnoredAttribute(String modifiedAttributeName) {
+			return "title".equals(modifiedAttributeName) || super.isIgnoredAttribute(modifiedAttributeName);
+		}
+		
+		@Override
+		protected boolean removeAttributeIfEmpty(String modifiedAttributeName) {
+			return !"data-removed".equals(modifiedAttributeName);
+		}
+	}
+	
+	@Test
+	public void testGeneratedModeFollowsProcessorRules() {
+		Element reflective = render(new CustomRulesProcessor(ProcessingMode.REFLECTIVE), new TextAndUtextBean());
+		Element generated = render(new CustomRulesProcessor(ProcessingMode.GENERATED), new TextAndUtextBean());
+		
+		assertEquals(attributes(reflective), attributes(generated));
+		assertEquals("static", generated.getAttributeValue("title"));
+		assertEquals("", generated.getAttributeValue("data-removed"));
+		assertEquals(1, generated.numChildren());
+		assertEquals("link text", ((Text)generated.getFirstChild()).getContent());
+		assertEquals("link text", ((Text)reflective.getFirstChild()).getContent());
+	}
+	
+	@Test
+	public void testUtextIsNotReadWhenThereIsText() {
+		BeanProcessor generated = new BeanProcessor(ProcessingMode.GENERATED);
+		TextAndUtextBean bean = new TextAndUtextBean();
+		render(generated, bean);
+		assertEquals(0, bean.utextCalls);
+	}
+	
+	@Test
+	public void testTemplateRendersTheSameInBothModes() {
+		String template = "<div><a title=\"static\" data-removed=\"static\" bean:use=\"${link}\">Hello</a></div>";
+		String reflective = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect(ProcessingMode.REFLECTIVE)), template, "link", new TextAndUtextBean());
+		String generated = BeanDialectTests.process(BeanDialectTests.engine(new BeanDialect(ProcessingMode.GENERATED)), template, "link", new TextAndUtextBean());
+		// Attribute order follows the plan in generated mode and is unspecified in reflective mode.
+		assertEquals(normalise(reflective), normalise(generated));
+	}
+	
+	private static String normalise(String html) {
+		Matcher tag = Pattern.compile("<a ([^>]*)>(.*)</a>").matcher(html);
+		assertTrue(tag.find());
+		Map<String,String> attributes = new TreeMap<String,String>();
+		Matcher attribute = Pattern.compile("([\\w-]+)=\"([^\"]*)\"").matcher(tag.group(1));
+		while(attribute.find()) {
+			attributes.put(attribute.group(1), attribute.group(2));
+		}
+		return attributes + tag.group(2);
+	}
+	
+	private static Element render(BeanProcessor processor, Object bean) {
+		Element element = new Element("a");
+		element.setAttribute("title", "static");
+		element.setAttribute("data-removed", "static");
+		element.addChild(new Text("Hello"));
+		processor.process(bean, element, processor.getProcessingMode()==ProcessingMode.GENERATED ? processor.getWriter(bean) : null, null);
+		return element;
+	}
+	
+	private static Map<String,String> attributes(Element element) {
+		Map<String,String> result = new HashMap<String,String>();
+		for(String name : element.getAttributeMap().keySet()) {
+			result.put(name, element.getAttributeValue(name));
+		}
+		return result;
+	}
+	
+	public static class FixedLinkBean {
+		static int calls;
+		
+		@ConstantAttribute
+		public String getRel() { calls++; return "noopener"; }
+		@ConstantAttribute
+		public List<String> getCssClass() { calls++; return Arrays.asList("link", "external"); }
+		@ConstantAttribute
+		public String getTitle() { calls++; return null; }
+		public String getHref() { return "/home"; }
+	}
+	
+	@Test
+	public void testConstantPropertiesAreReadOncePerClass() {
+		FixedLinkBean.calls = 0;
+		BeanAttributeReader reader = new BeanAttributeReader(BeanAttributeBinders.NONE, new BeanSettings());
+		
+		Map<String,String> first = reader.getProperties(new FixedLinkBean());
+		assertEquals(3, FixedLinkBean.calls);
+		assertEquals(first, reader.getProperties(new FixedLinkBean()));
+		assertEquals(3, FixedLinkBean.calls);
+		assertEquals("noopener", first.get("rel"));
+		assertEquals("link external", first.get("class"));
+		assertFalse(first.containsKey("title"));
+		assertEquals("/home", first.get("href"));
+	}
+	
+	@Test
+	public void testWriterReplaysConstantProperties() {
+		FixedLinkBean.calls = 0;
+		BeanProcessor processor = new BeanProcessor(ProcessingMode.GENERATED);
+		BeanWriter writer = processor.getWriter(new FixedLinkBean());
+		assertNotNull(writer);
+		
+		for(int i=0; i<3; i++) {
+			Element element = new Element("a");
+			element.setAttribute("title", "static");
+			assertEquals(3, writer.writeAttributes(new FixedLinkBean(), element, processor));
+			assertEquals("noopener", element.getAttributeValue("rel"));
+			assertEquals("link external", element.getAttributeValue("class"));
+			assertEquals("static", element.getAttributeValue("title"));
+		}
+		assertEquals(3, FixedLinkBean.calls);
+	}
+}
@@ -0,0 +1,100 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class GetterFailurePolicyTests {
+	
+	public static class BrokenBean {
+		int calls;
+		public String getHref() { return "/home"; }
+		public String getTitle() { calls++; throw new IllegalStateException("broken"); }
+	}
+	
+	private static BeanAttributeReader reader(GetterFailurePolicy policy) {
+		BeanSettings settings = new BeanSettings();
+		settings.setFailurePolicy(policy);
+		return settings.createReader(BeanAttributeBinders.NONE);
+	}
+	
+	@Test
+	public void testFailuresAreCountedAndLeftOut() {
+		GetterFailurePolicy policy = new GetterFailurePolicy();
+		BeanAttributeReader reader = reader(policy);
+		BrokenBean bean = new BrokenBean();
+		
+		Map<String,String> map = reader.getProperties(bean);
+		reader.getProperties(bean);
+		
+		assertEquals(1, map.size());
+		assertEquals("/home", map.get("href"));
+		assertEquals(2, bean.calls);
+		assertEquals(2, policy.getFailures());
+		assertEquals(Long.valueOf(2), policy.getFailuresByProperty().get(BrokenBean.class.getName() + ".title"));
+	}
+	
+	@Test
+	public void testPoliciesSharingAGetterCountTheirOwnFailures() {
+		GetterState property = new GetterState("title");
+		GetterFailurePolicy first = new GetterFailurePolicy();
+		GetterFailurePolicy second = new GetterFailurePolicy();
+		Throwable failure = new IllegalStateException("broken");
+		
+		first.failed(property, BrokenBean.class, failure);
+		second.failed(property, BrokenBean.class, failure);
+		first.failed(property, BrokenBean.class, failure);
+		first.failed(property, Object.class, failure);
+		
+		assertEquals(Long.valueOf(2), first.getFailuresByProperty().get(BrokenBean.class.getName() + ".title"));
+		assertEquals(Long.valueOf(1), first.getFailuresByProperty().get("java.lang.Object.title"));
+		assertEquals(Long.valueOf(1), second.getFailuresByProperty().get(BrokenBean.class.getName() + ".title"));
+	}
+	
+	@Test
+	public void testBreakerStopsCallingGetter() throws Exception {
+		GetterFailurePolicy policy = new GetterFailurePolicy(false, 2, 100, TimeUnit.MILLISECONDS);
+		BeanAttributeReader reader = reader(policy);
+		BrokenBean bean = new BrokenBean();
+		
+		for(int i=0; i<5; i++) {
+			assertEquals("/home", reader.getProperties(bean).get("href"));
+		}
+		assertEquals(2, bean.calls);
+		assertEquals(3, policy.getSkipped());
+		
+		Thread.sleep(150);
+		reader.getProperties(bean);
+		reader.getProperties(bean);
+		assertEquals(3, bean.calls);
+	}
+	
+	@Test
+	public void testBreakerAppliesToGeneratedWriters() {
+		GetterFailurePolicy policy = new GetterFailurePolicy(false, 1, 1, TimeUnit.MINUTES);
+		BeanWriter writer = BeanWriter.create(BeanPlan.create(BrokenBean.class), policy);
+		BrokenBean bean = new BrokenBean();
+		
+		org.thymeleaf.dom.Element element = new org.thymeleaf.dom.Element("a");
+		writer.writeAttributes(bean, element, new BeanProcessor());
+		writer.writeAttributes(bean, element, new BeanProcessor());
+		
+		assertEquals("/home", element.getAttributeValue("href"));
+		assertEquals(1, bean.calls);
+	}
+	
+	@Test
+	public void testStrictModeThrows() {
+		try {
+			reader(GetterFailurePolicy.strict()).getProperties(new BrokenBean());
+			fail("Expected a BeanPropertyException");
+		} catch(BeanPropertyException e) {
+			assertEquals(BrokenBean.class, e.getBeanClass());
+			assertEquals("title", e.getPropertyName());
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.thymeleaf.dom.Element;
+
+public class GetterProfilerTests {
+	
+	public static class ProductTile {
+		public String getHref() { return "/product"; }
+		public String getTitle() {
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "Product";
+		}
+	}
+	
+	@Test
+	public void testSlowestPropertiesAreReported() {
+		GetterProfiler profiler = new GetterProfiler(1D, 0, TimeUnit.MILLISECONDS);
+		BeanAttributeReader reader = reader(profiler);
+		for(int i=0; i<5; i++) {
+			reader.getProperties(new ProductTile());
+		}
+		
+		assertEquals(10, profiler.getSampledInvocations());
+		List<GetterProfiler.PropertyTimings> slowest = profiler.getSlowestProperties(1);
+		assertEquals(1, slowest.size());
+		assertEquals(ProductTile.class.getName(), slowest.get(0).getBeanClassName());
+		assertEquals("title", slowest.get(0).getPropertyName());
+		assertEquals(5, slowest.get(0).getSamples());
+		assertTrue(slowest.get(0).getMeanNanos()>=TimeUnit.MILLISECONDS.toNanos(2));
+		assertTrue(slowest.get(0).getMaximumNanos()>=slowest.get(0).getMeanNanos());
+		assertEquals(2, profiler.getSlowestProperties(10).size());
+	}
+	
+	@Test
+	public void testPropertiesBelowThresholdAreNotReported() {
+		GetterProfiler profiler = new GetterProfiler(1D, 1, TimeUnit.MILLISECONDS);
+		reader(profiler).getProperties(new ProductTile());
+		
+		List<GetterProfiler.PropertyTimings> slowest = profiler.getSlowestProperties(10);
+		assertEquals(1, slowest.size());
+		assertEquals("title", slowest.get(0).getPropertyName());
+	}
+	
+	@Test
+	public void testOnlySampleIsTimed() {
+		GetterProfiler profiler = new GetterProfiler(0.1D, 0, TimeUnit.MILLISECONDS);
+		assertEquals(0.1D, profiler.getSampleRate(), 0.0001D);
+		int sampled = 0;
+		for(int i=0; i<10000; i++) {
+			if(profiler.sample()) {
+				sampled++;
+			}
+		}
+		assertTrue(sampled + " sampled", sampled>500 && sampled<1500);
+	}
+	
+	@Test
+	public void testWriterIsProfiled() {
+		GetterProfiler profiler = new GetterProfiler(1D, 0, TimeUnit.MILLISECONDS);
+		BeanWriter writer = BeanWriter.create(BeanPlan.create(ProductTile.class), new GetterFailurePolicy(), profiler);
+		assertNotNull(writer);
+		writer.writeAttributes(new ProductTile(), new Element("a"), new BeanProcessor());
+		
+		assertEquals(2, profiler.getSampledInvocations());
+		assertEquals("title", profiler.getSlowestProperties(1).get(0).getPropertyName());
+	}
+	
+	public static class DeferredTile {
+		public Supplier<String> getTitle() {
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new Supplier<String>() {
+				public String get() { return "Product"; }
+			};
+		}
+	}
+	
+	@Test
+	public void testDeferredGetterIsProfiled() {
+		GetterProfiler profiler = new GetterProfiler(1D, 0, TimeUnit.MILLISECONDS);
+		assertEquals("Product", reader(profiler).getProperties(new DeferredTile()).get("title"));
+		
+		assertEquals(1, profiler.getSampledInvocations());
+		assertEquals("title", profiler.getSlowestProperties(1).get(0).getPropertyName());
+	}
+	
+	@Test
+	public void testUnregistersFromTheServerItRegisteredWith() throws Exception {
+		GetterProfiler profiler = new GetterProfiler(1D, 0, TimeUnit.MILLISECONDS);
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		ObjectName name = new ObjectName(GetterProfiler.DOMAIN + ":type=GetterProfiler,name=private");
+		
+		profiler.register(server, name);
+		assertTrue(server.isRegistered(name));
+		profiler.unregister();
+		assertFalse(server.isRegistered(name));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testSampleRateMustBePositive() {
+		new GetterProfiler(0D, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	@Test
+	public void testRegisteredWithJmx() throws Exception {
+		GetterProfiler profiler = new GetterProfiler(1D, 0, TimeUnit.MILLISECONDS);
+		reader(profiler).getProperties(new ProductTile());
+		
+		ObjectName name = profiler.register("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(Long.valueOf(2), server.getAttribute(name, "SampledInvocations"));
+			String[] slowest = (String[]) server.getAttribute(name, "SlowestProperties");
+			assertEquals(2, slowest.length);
+			assertTrue(slowest[0].startsWith(ProductTile.class.getName() + ".title samples=1"));
+		} finally {
+			profiler.unregister();
+		}
+		profiler.reset();
+		assertEquals(0, profiler.getSampledInvocations());
+		assertEquals(0, profiler.getSlowestProperties(10).size());
+	}
+	
+	private static BeanAttributeReader reader(GetterProfiler profiler) {
+		BeanSettings settings = new BeanSettings();
+		settings.setGetterProfiler(profiler);
+		return settings.createReader(BeanAttributeBinders.NONE);
+	}
+}
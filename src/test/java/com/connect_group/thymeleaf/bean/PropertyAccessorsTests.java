@@ -0,0 +1,71 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class PropertyAccessorsTests {
+	
+	public static class PublicBean {
+		public String getTitle() { return "thetitle"; }
+		public int getCount() { return 42; }
+		public boolean isVisible() { return true; }
+		public String getBroken() throws IOException { throw new IOException("broken"); }
+	}
+	
+	@Test
+	public void testLambdaAccessorForPublicBean() throws Exception {
+		PublicBean bean = new PublicBean();
+		
+		assertEquals("thetitle", PropertyAccessors.lambda(PublicBean.class.getMethod("getTitle")).get(bean));
+		assertEquals(Integer.valueOf(42), PropertyAccessors.lambda(PublicBean.class.getMethod("getCount")).get(bean));
+		assertEquals(Boolean.TRUE, PropertyAccessors.lambda(PublicBean.class.getMethod("isVisible")).get(bean));
+	}
+	
+	@Test
+	public void testAnonymousBeanFallsBackToMethodHandle() throws Exception {
+		Object bean = new Object() {
+			@SuppressWarnings("unused")
+			public String getTitle() { return "anonymous"; }
+		};
+		
+		Method method = bean.getClass().getMethod("getTitle");
+		PropertyAccessor accessor = PropertyAccessors.create(method);
+		
+		assertEquals("anonymous", accessor.get(bean));
+		assertEquals("anonymous", PropertyAccessors.methodHandle(method).get(bean));
+	}
+	
+	@Test
+	public void testAllAccessorsAgree() throws Exception {
+		PublicBean bean = new PublicBean();
+		Method method = PublicBean.class.getMethod("getCount");
+		
+		assertEquals(PropertyAccessors.reflective(method).get(bean), PropertyAccessors.create(method).get(bean));
+		assertEquals(PropertyAccessors.reflective(method).get(bean), PropertyAccessors.methodHandle(method).get(bean));
+	}
+	
+	@Test
+	public void testGetterExceptionsAreUnwrapped() throws Exception {
+		PublicBean bean = new PublicBean();
+		Method method = PublicBean.class.getMethod("getBroken");
+		
+		PropertyAccessor[] accessors = new PropertyAccessor[] {
+				PropertyAccessors.lambda(method),
+				PropertyAccessors.methodHandle(method),
+				PropertyAccessors.reflective(method)
+		};
+		
+		for(PropertyAccessor accessor : accessors) {
+			try {
+				accessor.get(bean);
+				fail("Expected an IOException");
+			} catch (IOException e) {
+				assertEquals("broken", e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.connect_group.thymeleaf.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PropertyPrefetcherTests {
+	
+	private final ExecutorService executor = PropertyPrefetcher.defaultExecutor();
+	
+	public static class SlowBean {
+		public String getHref() { return "/product"; }
+		public Supplier<String> getTitle() { return slow("Title", 300); }
+		public Supplier<String> getAlt() { return slow("Alt", 300); }
+		public Supplier<Boolean> getDisabled() { return slow(Boolean.TRUE, 300); }
+		public Future<String> getLang() { return CompletableFuture.completedFuture("en"); }
+	}
+	
+	public static class NeverReadyBean {
+		public String getHref() { return "/product"; }
+		public Future<String> getTitle() { return new CompletableFuture<String>(); }
+	}
+	
+	static <T> Supplier<T> slow(final T value, final long millis) {
+		return new Supplier<T>() {
+			public T get() {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return value;
+			}
+		};
+	}
+	
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	@Test
+	public void testDeferredPropertiesAreResolved() {
+		Map<String,String> map = reader(PropertyPrefetcher.INLINE, new GetterFailurePolicy()).getProperties(new SlowBean());
+		
+		assertEquals(5, map.size());
+		assertEquals("/product", map.get("href"));
+		assertEquals("Title", map.get("title"));
+		assertEquals("Alt", map.get("alt"));
+		assertEquals("disabled", map.get("disabled"));
+		assertEquals("en", map.get("lang"));
+	}
+	
+	@Test
+	public void testSuppliersRunInParallel() {
+		PropertyPrefetcher prefetcher = new PropertyPrefetcher(executor, 5, TimeUnit.SECONDS);
+		BeanAttributeReader reader = reader(prefetcher, new GetterFailurePolicy());
+		
+		long start = System.nanoTime();
+		Map<String,String> map = reader.getProperties(new SlowBean());
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		assertEquals(5, map.size());
+		assertTrue("took " + millis + "ms", millis < 800);
+	}
+	
+	@Test
+	public void testPropertyWhichMissesTheDeadlineIsNotWritten() {
+		PropertyPrefetcher prefetcher = new PropertyPrefetcher(executor, 50, TimeUnit.MILLISECONDS);
+		BeanAttributeReader reader = reader(prefetcher, new GetterFailurePolicy());
+		
+		Map<String,String> map = reader.getProperties(new NeverReadyBean());
+		assertEquals(1, map.size());
+		assertEquals("/product", map.get("href"));
+	}
+	
+	public static class TwoNeverReadyBean {
+		final CompletableFuture<String> title = new CompletableFuture<String>();
+		final CompletableFuture<String> alt = new CompletableFuture<String>();
+		public Future<String> getTitle() { return title; }
+		public Future<String> getAlt() { return alt; }
+	}
+	
+	@Test
+	public void testFuturesWhichMissTheDeadlineAreCancelled() {
+		GetterFailurePolicy policy = new GetterFailurePolicy();
+		PropertyPrefetcher prefetcher = new PropertyPrefetcher(executor, 50, TimeUnit.MILLISECONDS);
+		TwoNeverReadyBean bean = new TwoNeverReadyBean();
+		
+		long start = System.nanoTime();
+		assertEquals(0, reader(prefetcher, policy).getProperties(bean).size());
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		assertTrue(bean.title.isCancelled());
+		assertTrue(bean.alt.isCancelled());
+		assertEquals(2, policy.getFailures());
+		assertTrue("took " + millis + "ms", millis < 500);
+	}
+	
+	public static class FailingBean {
+		public String getHref() { return "/product"; }
+		public Supplier<String> getTitle() {
+			return new Supplier<String>() {
+				public String get() { throw new IllegalStateException("title service down"); }
+			};
+		}
+	}
+	
+	@Test
+	public void testFailuresAndMissedDeadlinesGoToThePolicy() {
+		GetterFailurePolicy policy = new GetterFailurePolicy();
+		PropertyPrefetcher prefetcher = new PropertyPrefetcher(executor, 50, TimeUnit.MILLISECONDS);
+		BeanAttributeReader reader = reader(prefetcher, policy);
+		
+		assertEquals(1, reader.getProperties(new FailingBean()).size());
+		assertEquals(Long.valueOf(1), policy.getFailuresByProperty().get(FailingBean.class.getName() + ".title"));
+		
+		assertEquals(1, reader.getProperties(new NeverReadyBean()).size());
+		assertEquals(Long.valueOf(1), policy.getFailuresByProperty().get(NeverReadyBean.class.getName() + ".title"));
+		assertEquals(2, policy.getFailures());
+	}
+	
+	@Test
+	public void testFailedSupplierOpensTheBreaker() {
+		GetterFailurePolicy policy = new GetterFailurePolicy(false, 2, 1, TimeUnit.MINUTES);
+		BeanAttributeReader reader = reader(PropertyPrefetcher.INLINE, policy);
+		
+		for(int i=0; i<4; i++) {
+			reader.getProperties(new FailingBean());
+		}
+		assertEquals(2, policy.getFailures());
+		assertEquals(2, policy.getSkipped());
+	}
+	
+	@Test
+	public void testDeferredBeanHasNoWriter() {
+		assertNull(BeanWriter.create(BeanPlan.create(SlowBean.class)));
+	}
+	
+	private static BeanAttributeReader reader(PropertyPrefetcher prefetcher, GetterFailurePolicy policy) {
+		BeanSettings settings = new BeanSettings();
+		settings.setPrefetcher(prefetcher);
+		settings.setFailurePolicy(policy);
+		return settings.createReader(BeanAttributeBinders.NONE);
+	}
+}
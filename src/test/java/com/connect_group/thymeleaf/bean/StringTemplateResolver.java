@@ -0,0 +1,35 @@
+package com.connect_group.thymeleaf.bean;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.thymeleaf.TemplateProcessingParameters;
+import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
+import org.thymeleaf.templateresolver.TemplateResolver;
+
+/**
+ * Treats the template name as the template itself.
+ */
+public class StringTemplateResolver extends TemplateResolver {
+	
+	public StringTemplateResolver() {
+		super();
+		setTemplateMode(StandardTemplateModeHandlers.XHTML.getTemplateModeName());
+		setCharacterEncoding("UTF-8");
+		setResourceResolver(new IResourceResolver() {
+			public String getName() {
+				return "STRING";
+			}
+			
+			public InputStream getResourceAsStream(TemplateProcessingParameters templateProcessingParameters, String resourceName) {
+				try {
+					return new ByteArrayInputStream(resourceName.getBytes("UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+	}
+}
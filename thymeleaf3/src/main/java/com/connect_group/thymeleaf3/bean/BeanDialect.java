@@ -0,0 +1,88 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf3.bean;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.thymeleaf.dialect.AbstractProcessorDialect;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.standard.processor.StandardXmlNsTagProcessor;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import com.connect_group.thymeleaf.bean.BeanAttributeBinders;
+import com.connect_group.thymeleaf.bean.BeanAttributeReader;
+import com.connect_group.thymeleaf.bean.BeanSettings;
+
+/**
+ * The bean dialect for Thymeleaf 3.  Provides bean:use for HTML and XML templates.
+ * 
+ * Its settings are those it shares with the Thymeleaf 2.1 dialect, kept on a {@link BeanSettings}; like them, they must
+ * be made before the template engine is initialised, and later changes are not seen.
+ * 
+ *     BeanDialect dialect = new BeanDialect();
+ *     dialect.getSettings().setAttributeMemo(new BeanAttributeMemo(10000));
+ * 
+ * @author adam
+ *
+ */
+public class BeanDialect extends AbstractProcessorDialect {
+	
+	public static final String NAME = "Bean";
+	public static final String PREFIX = "bean";
+	
+	private final BeanSettings settings;
+
+	public BeanDialect() {
+		this(new BeanSettings());
+	}
+	
+	public BeanDialect(BeanSettings settings) {
+		super(NAME, PREFIX, StandardDialect.PROCESSOR_PRECEDENCE);
+		if(settings==null) {
+			throw new IllegalArgumentException("Settings cannot be null");
+		}
+		this.settings = settings;
+	}
+	
+	public BeanSettings getSettings() {
+		return settings;
+	}
+
+	public Set<IProcessor> getProcessors(final String dialectPrefix) {
+		BeanAttributeReader reader = settings.createReader(BeanAttributeBinders.load(getClassLoader()));
+		if(settings.getWarmUp()!=null) {
+			settings.getWarmUp().prepare(reader, getClassLoader());
+		}
+		
+		final Set<IProcessor> processors = new HashSet<IProcessor>();
+		processors.add(new BeanTagProcessor(TemplateMode.HTML, dialectPrefix, reader));
+		processors.add(new BeanTagProcessor(TemplateMode.XML, dialectPrefix, reader));
+		processors.add(new StandardXmlNsTagProcessor(TemplateMode.HTML, dialectPrefix));
+		processors.add(new StandardXmlNsTagProcessor(TemplateMode.XML, dialectPrefix));
+		return processors;
+	}
+	
+	private ClassLoader getClassLoader() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return classLoader!=null ? classLoader : BeanDialect.class.getClassLoader();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2013, Connect Group (http://www.connect-group.com)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package com.connect_group.thymeleaf3.bean;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.element.AbstractAttributeTagProcessor;
+import org.thymeleaf.processor.element.IElementTagStructureHandler;
+import org.thymeleaf.standard.expression.IStandardExpression;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.EscapedAttributeUtils;
+import org.unbescape.html.HtmlEscape;
+import org.unbescape.xml.XmlEscape;
+
+import com.connect_group.thymeleaf.bean.AttributeSource;
+import com.connect_group.thymeleaf.bean.BeanAttributeReader;
+
+/**
+ * The bean:use attribute for Thymeleaf 3.
+ * 
+ * Attributes are read exactly as the Thymeleaf 2 BeanProcessor reads them, and are applied to the tag
+ * through the structure handler, so no DOM is built.
+ * 
+ * @see com.connect_group.thymeleaf.bean.BeanProcessor
+ * @author adam
+ *
+ */
+public class BeanTagProcessor extends AbstractAttributeTagProcessor {
+	
+	public static final String ATTRIBUTE_NAME = "use";
+	public static final int PRECEDENCE = 200;
+	
+	private final BeanAttributeReader reader;
+
+	public BeanTagProcessor(final TemplateMode templateMode, final String dialectPrefix, final BeanAttributeReader reader) {
+		super(templateMode, dialectPrefix, null, false, ATTRIBUTE_NAME, true, PRECEDENCE, true);
+		this.reader = reader;
+	}
+
+	@Override
+	protected void doProcess(final ITemplateContext context, final IProcessableElementTag tag, final AttributeName attributeName, final String attributeValue, final IElementTagStructureHandler structureHandler) {
+		final IStandardExpression expression = StandardExpressions.getExpressionParser(context.getConfiguration()).parseExpression(context, attributeValue);
+		final Object bean = expression.execute(context);
+		
+		TagVisitor visitor = new TagVisitor(getTemplateMode(), structureHandler);
+		reader.read(bean, visitor);
+		visitor.finish();
+	}
+	
+	/**
+	 * The structure handler applies every removal after every set, so removals are held back 
+	 * until the end and dropped if the attribute is set again; the last value for a name wins, as it would in the DOM.
+	 */
+	private static final class TagVisitor implements AttributeSource.Visitor {
+		private final TemplateMode templateMode;
+		private final IElementTagStructureHandler structureHandler;
+		private Set<String> removed;
+		private String text;
+		private String utext;
+		
+		TagVisitor(TemplateMode templateMode, IElementTagStructureHandler structureHandler) {
+			this.templateMode = templateMode;
+			this.structureHandler = structureHandler;
+		}
+
+		public void attribute(String name, String value) {
+			if("text".equals(name)) {
+				text = value;
+			} else if("utext".equals(name)) {
+				utext = value;
+			} else if(value==null || value.length()==0) {
+				if(removed==null) {
+					removed = new LinkedHashSet<String>();
+				}
+				removed.add(name);
+			} else {
+				if(removed!=null) {
+					removed.remove(name);
+				}
+				structureHandler.setAttribute(name, EscapedAttributeUtils.escapeAttribute(templateMode, value));
+			}
+		}
+		
+		void finish() {
+			if(removed!=null) {
+				for(String name : removed) {
+					structureHandler.removeAttribute(name);
+				}
+			}
+			
+			if(text!=null) {
+				structureHandler.setBody(escape(text), false);
+			} else if(utext!=null) {
+				structureHandler.setBody(utext, false);
+			}
+		}
+		
+		private String escape(final String text) {
+			return templateMode==TemplateMode.XML ? XmlEscape.escapeXml10(text) : HtmlEscape.escapeHtml4Xml(text);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.connect_group.thymeleaf3.bean;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import com.connect_group.thymeleaf.bean.GetterFailurePolicy;
+
+public class BeanDialectTests {
+	
+	public static class LinkBean {
+		public String getHref() { return "http://www.example.com/?a=1&b=2"; }
+		public String getText() { return "Fish & Chips"; }
+		public boolean isDisabled() { return true; }
+		public boolean isHidden() { return false; }
+		public List<String> getCssClass() { return Arrays.asList("abc", "def"); }
+		public String getDataMobileUrl() { return "mobile"; }
+		public Map<String,Object> getData() {
+			Map<String,Object> map = new LinkedHashMap<String,Object>();
+			map.put("x", "y");
+			map.put("removed", null);
+			return map;
+		}
+	}
+	
+	private static String process(String template, Object bean) {
+		return process(new BeanDialect(), template, bean);
+	}
+	
+	private static String process(BeanDialect dialect, String template, Object bean) {
+		StringTemplateResolver resolver = new StringTemplateResolver();
+		resolver.setTemplateMode(TemplateMode.HTML);
+		
+		TemplateEngine engine = new TemplateEngine();
+		engine.setTemplateResolver(resolver);
+		engine.addDialect(dialect);
+		
+		Context context = new Context();
+		context.setVariable("bean", bean);
+		return engine.process(template, context);
+	}
+	
+	@Test
+	public void testBean() {
+		String html = process("<a class=\"static\" data-removed=\"static\" bean:use=\"${bean}\">Hello!</a>", new LinkBean());
+		
+		assertTrue(html, html.startsWith("<a "));
+		assertTrue(html, html.endsWith(">Fish &amp; Chips</a>"));
+		assertTrue(html, html.contains(" class=\"abc def\""));
+		assertTrue(html, html.contains(" href=\"http://www.example.com/?a=1&amp;b=2\""));
+		assertTrue(html, html.contains(" disabled=\"disabled\""));
+		assertTrue(html, html.contains(" data-mobile-url=\"mobile\""));
+		assertTrue(html, html.contains(" data-x=\"y\""));
+		assertFalse(html, html.contains("hidden"));
+		assertFalse(html, html.contains("data-removed"));
+		assertFalse(html, html.contains("bean:use"));
+	}
+	
+	public static class BrokenBean {
+		public String getHref() { return "/home"; }
+		public String getTitle() { throw new IllegalStateException("broken"); }
+	}
+	
+	@Test
+	public void testSettingsAreUsed() {
+		GetterFailurePolicy policy = new GetterFailurePolicy();
+		BeanDialect dialect = new BeanDialect();
+		dialect.getSettings().setFailurePolicy(policy);
+		
+		assertEquals("<a href=\"/home\">Hello!</a>", process(dialect, "<a bean:use=\"${bean}\">Hello!</a>", new BrokenBean()));
+		assertEquals(1, policy.getFailures());
+	}
+	
+	@Test
+	public void testMap() {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("href", "http://www.example.com");
+		map.put("utext", "<b>Bold</b>");
+		
+		assertEquals("<a href=\"http://www.example.com\"><b>Bold</b></a>", process("<a bean:use=\"${bean}\">Hello!</a>", map));
+	}
+	
+	@Test
+	public void testRemovedThenSetAttributeIsKept() {
+		Map<String,Object> map = new LinkedHashMap<String,Object>();
+		map.put("title", "");
+		map.put("alt", "x");
+		
+		assertEquals("<img alt=\"x\">", process("<img title=\"static\" bean:use=\"${bean}\">", map));
+	}
+	
+	@Test
+	public void testNullBean() {
+		assertEquals("<a href=\"#\">Hello!</a>", process("<a href=\"#\" bean:use=\"${bean}\">Hello!</a>", null));
+	}
+}